@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.4.5"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.example"
@@ -17,12 +18,34 @@ repositories {
 	mavenCentral()
 }
 
+// Нагрузочные тесты (src/perf) используют классы и зависимости обычных тестов,
+// запускаются отдельно: ./gradlew perfTest -Dperf.workers=32 -Dtransfer.mode=CONDITIONAL
+sourceSets {
+	create("perf") {
+		compileClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+		runtimeClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+	}
+}
+
+configurations {
+	named("perfImplementation") { extendsFrom(configurations.testImplementation.get()) }
+	named("perfRuntimeOnly") { extendsFrom(configurations.testRuntimeOnly.get()) }
+	named("perfCompileOnly") { extendsFrom(configurations.compileOnly.get()) }
+	named("perfAnnotationProcessor") { extendsFrom(configurations.annotationProcessor.get()) }
+}
+
 dependencies {
 	// Spring
 	implementation("org.springframework.boot:spring-boot-starter-web")
 	implementation("org.springframework.boot:spring-boot-starter-data-jpa")
 	implementation("org.springframework.boot:spring-boot-starter-validation")
-	runtimeOnly("org.postgresql:postgresql")
+	implementation("org.springframework.boot:spring-boot-starter-aop")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	// CopyManager для загрузки импорта через COPY
+	implementation("org.postgresql:postgresql")
+
+	// Cache
+	implementation("com.github.ben-manes.caffeine:caffeine")
 
 	// Lombok
 	compileOnly("org.projectlombok:lombok")
@@ -51,4 +74,28 @@ dependencies {
 
 tasks.withType<Test> {
 	useJUnitPlatform()
+	// Печатает стек, если виртуальный поток закрепился на платформенном (synchronized, native)
+	jvmArgs("-Djdk.tracePinnedThreads=short")
+}
+
+// Микробенчмарки JMH (src/jmh): ./gradlew jmh, отчёт в build/results/jmh
+jmh {
+	warmupIterations = 3
+	iterations = 5
+	fork = 1
+	resultFormat = "JSON"
+}
+
+tasks.register<Test>("perfTest") {
+	description = "Запускает нагрузочные тесты из src/perf, отчёты пишутся в build/perf"
+	group = "verification"
+	testClassesDirs = sourceSets["perf"].output.classesDirs
+	classpath = sourceSets["perf"].runtimeClasspath
+	shouldRunAfter(tasks.test)
+	outputs.upToDateWhen { false }
+	systemProperty("perf.output-dir", layout.buildDirectory.dir("perf").get().asFile.absolutePath)
+	// Пробрасываем настройки нагрузки и режим перевода из командной строки
+	System.getProperties()
+		.filterKeys { it.toString().startsWith("perf.") || it.toString().startsWith("transfer.") }
+		.forEach { (key, value) -> systemProperty(key.toString(), value) }
 }
@@ -0,0 +1,70 @@
+package com.example.bankcards.jmh;
+
+import com.example.bankcards.util.JwtUtils;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость проверки JWT на один запрос в AuthTokenFilter.
+ * legacy - как было до parse-once: ключ декодируется и парсер собирается на каждый вызов,
+ * токен разбирается и проверяется дважды (validateJwtToken, затем getUserEmailFromJwtToken).
+ * parseOnce - JwtUtils без кэша: готовый парсер, одна проверка.
+ * cached - JwtUtils с кэшем, тот же bearer-токен приходит повторно
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET =
+            "tstrs4g434wyhser5htstrs4g434wyhser5htstrs4g434wyhser5htstrs4g434wyhser5htstrs4g434wyhser5h";
+
+    private String token;
+    private JwtUtils uncached;
+    private JwtUtils cached;
+
+    @Setup
+    public void setUp() {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        token = Jwts.builder()
+                .claim("roles", List.of(Map.of("authority", "ROLE_USER")))
+                .setSubject("user@gmail.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+        uncached = new JwtUtils(SECRET, 86_400_000, 0);
+        cached = new JwtUtils(SECRET, 86_400_000, 10_000);
+    }
+
+    @Benchmark
+    public String legacy() {
+        Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parse(token);
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public String parseOnce() {
+        return uncached.parseClaims(token).orElseThrow().getSubject();
+    }
+
+    @Benchmark
+    public String cached() {
+        return cached.parseClaims(token).orElseThrow().getSubject();
+    }
+}
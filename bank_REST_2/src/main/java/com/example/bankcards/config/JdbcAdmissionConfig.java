@@ -0,0 +1,35 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.util.AdmissionControlledDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Ограничение числа потоков, одновременно обращающихся к пулу Hikari (jdbc.admission.enabled=true).
+ * Включается в профиле virtual, где запросы выполняются на виртуальных потоках.
+ * По умолчанию число разрешений равно maximum-pool-size пула
+ *
+ * @see AdmissionControlledDataSource
+ */
+@Configuration
+@ConditionalOnProperty(name = "jdbc.admission.enabled", havingValue = "true")
+public class JdbcAdmissionConfig {
+
+    @Bean
+    public static BeanPostProcessor jdbcAdmissionPostProcessor(@Value("${jdbc.admission.permits:0}") int permits) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource hikari)) {
+                    return bean;
+                }
+                int limit = permits > 0 ? permits : hikari.getMaximumPoolSize();
+                return new AdmissionControlledDataSource(hikari, limit, hikari.getConnectionTimeout());
+            }
+        };
+    }
+}
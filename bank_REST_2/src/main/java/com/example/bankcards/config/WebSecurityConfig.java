@@ -1,16 +1,22 @@
 package com.example.bankcards.config;
 
 
+import com.example.bankcards.service.PasswordCostRegistry;
+import com.example.bankcards.service.TokenVersionRegistry;
 import com.example.bankcards.service.UserDetailsService;
 import com.example.bankcards.util.AuthEntryPointJwt;
 import com.example.bankcards.util.AuthTokenFilter;
+import com.example.bankcards.util.BulkheadPasswordEncoder;
 import com.example.bankcards.util.JwtUtils;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -18,7 +24,6 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
@@ -27,6 +32,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
@@ -39,10 +45,11 @@ public class WebSecurityConfig {
     private final UserDetailsService userDetailsService;
     private final JwtUtils jwtUtils;
     private final AuthEntryPointJwt unauthorizedHandler;
+    private final TokenVersionRegistry tokenVersionRegistry;
 
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
-        return new AuthTokenFilter(jwtUtils, userDetailsService);
+        return new AuthTokenFilter(jwtUtils, userDetailsService, tokenVersionRegistry);
     }
 
     @Bean
@@ -51,6 +58,8 @@ public class WebSecurityConfig {
 
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder);
+        // Перехеширует пароль при входе, если стоимость BCrypt сохранённого хеша отличается от общей стоимости кластера
+        authProvider.setUserDetailsPasswordService(userDetailsService);
 
         return authProvider;
     }
@@ -79,7 +88,7 @@ public class WebSecurityConfig {
 
         // Разрешаемые заголовки
         configuration.setAllowedHeaders(Arrays.asList(
-                "Authorization", "Content-Type", "X-Requested-With", "Accept", "Origin"
+                "Authorization", "Content-Type", "X-Requested-With", "Accept", "Origin", "Idempotency-Key"
         ));
 
         // Разрешаем передачу cookies и авторизационных заголовков
@@ -94,9 +103,34 @@ public class WebSecurityConfig {
         return source;
     }
 
+    /**
+     * Стоимость BCrypt strength=0 подбирается при старте под target-latency в пределах [min-strength, max-strength]
+     * и согласуется между узлами через БД, см. {@link PasswordCostRegistry}
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordCostRegistry passwordCostRegistry(JdbcTemplate jdbcTemplate,
+                                                     @Value("${security.password-hashing.strength:0}") int strength,
+                                                     @Value("${security.password-hashing.target-latency:100ms}") Duration targetLatency,
+                                                     @Value("${security.password-hashing.min-strength:10}") int minStrength,
+                                                     @Value("${security.password-hashing.max-strength:16}") int maxStrength,
+                                                     @Value("${security.password-hashing.recalibrate-after:7d}") Duration recalibrateAfter) {
+        return new PasswordCostRegistry(jdbcTemplate, strength, targetLatency, minStrength, maxStrength, recalibrateAfter);
+    }
+
+    /**
+     * BCrypt выполняется в отдельном ограниченном пуле, см. {@link BulkheadPasswordEncoder}.
+     * threads=0 - по числу процессоров
+     */
+    @Bean
+    public BulkheadPasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                                   PasswordCostRegistry passwordCostRegistry,
+                                                   @Value("${security.password-hashing.threads:0}") int threads,
+                                                   @Value("${security.password-hashing.queue-capacity:64}") int queueCapacity,
+                                                   @Value("${security.password-hashing.timeout:5s}") Duration timeout,
+                                                   @Value("${security.password-hashing.retry-after:1s}") Duration retryAfter) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BulkheadPasswordEncoder(passwordCostRegistry.getEncoder(), poolSize, queueCapacity,
+                timeout, retryAfter, meterRegistry);
     }
 
     @Bean
@@ -1,9 +1,22 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CardBulkResultDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardPageDTO;
+import com.example.bankcards.dto.CardSearchPageDTO;
 import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferHistoryDTO;
+import com.example.bankcards.dto.TransferResultDTO;
+import com.example.bankcards.service.CardIssuanceService;
+import com.example.bankcards.service.CardListingService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TransferService;
 import com.example.bankcards.service.UserDetailsImpl;
+import com.example.bankcards.util.CardSortKey;
+import com.example.bankcards.util.ExportFormat;
+import com.example.bankcards.util.ExportWriter;
+import com.example.bankcards.util.TransferBatchMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -19,7 +32,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -28,12 +46,17 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -44,13 +67,66 @@ import java.util.List;
 public class CardController {
 
     private final CardService cardService;
+    private final CardListingService cardListingService;
+    private final CardIssuanceService cardIssuanceService;
+    private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    @GetMapping("/")
-    @Operation(summary = "Получить все карты", description = "Получение списка всех карт (только для администраторов)")
+    @GetMapping(value = "/", produces = {MediaType.APPLICATION_JSON_VALUE, CardListingService.NDJSON_VALUE})
+    @Operation(summary = "Получить все карты", description = "Получение списка всех карт (только для администраторов). " +
+            "Список пишется потоком: JSON-массив или NDJSON при Accept: application/x-ndjson")
     @ApiResponse(responseCode = "200", description = "Список карт получен")
-    public List<CardDTO> getAllCards() {
-        return cardService.findAllCards();
+    public ResponseEntity<StreamingResponseBody> getAllCards(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        boolean ndjson = accept != null && accept.contains(CardListingService.NDJSON_VALUE);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? CardListingService.NDJSON : MediaType.APPLICATION_JSON)
+                .body(outputStream -> cardListingService.writeAllCards(outputStream, ndjson));
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    @Operation(summary = "Выгрузить карты с владельцами", description = "Выгрузка всех карт вместе с данными владельцев " +
+            "(только для администраторов) в CSV или NDJSON, потоком по курсору БД. Фильтры как у поиска, необязательны. " +
+            "При Accept-Encoding: gzip ответ сжимается на лету")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Выгрузка пишется в ответ"),
+            @ApiResponse(responseCode = "400", description = "Неизвестный статус карты", content = @Content)
+    })
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @Parameter(description = "Формат выгрузки: CSV или NDJSON", example = "CSV")
+            @RequestParam(value = "format", defaultValue = "CSV") ExportFormat format,
+            @RequestParam(value = "user_id", required = false) Long userId,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "final_date", required = false) LocalDate finalDate,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = ExportWriter.acceptsGzip(acceptEncoding);
+        // Фильтры проверяются до ответа: ошибка в потоке пришла бы после статуса 200 и заголовков
+        CardListingService.ExportQuery query = cardListingService.prepareExport(userId, status, finalDate);
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("cards." + format.getExtension()).build().toString())
+                .headers(headers -> {
+                    if (gzip) {
+                        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    }
+                })
+                .body(outputStream -> cardListingService.exportCards(outputStream, format, gzip, query));
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping(value = "/", params = "limit")
+    @Operation(summary = "Получить страницу карт", description = "Постраничная выдача всех карт по возрастанию ID " +
+            "(только для администраторов). Для следующей страницы передайте nextAfter как after")
+    @ApiResponse(responseCode = "200", description = "Страница карт получена")
+    public CardPageDTO getCardsPage(
+            @Parameter(description = "ID последней карты предыдущей страницы", example = "0")
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @Parameter(description = "Размер страницы, не больше 1000", example = "100")
+            @RequestParam("limit") int limit) {
+        return cardListingService.findPage(after, limit);
     }
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -106,6 +182,34 @@ public class CardController {
         return cardService.saveCard(cardDTO);
     }
 
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, CardListingService.NDJSON_VALUE})
+    @Operation(summary = "Выпустить карты пакетом", description = "Выпуск множества карт одним запросом (только для администраторов). " +
+            "Тело - JSON-массив карт или NDJSON, читается потоком и вставляется частями. " +
+            "Карты с ошибками не выпускаются и перечисляются в ответе, остальные выпускаются")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Число принятых и выпущенных карт и ошибки по строкам")
+    })
+    public CardBulkResultDTO issueCards(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Карты для выпуска",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(
+                                    value = """
+                                            [
+                                              {"finalDate": "2027-12-31", "balance": 0, "userId": 123},
+                                              {"finalDate": "2027-12-31", "status": "ACTIVE", "balance": 5000, "userId": 124}
+                                            ]
+                                            """
+                            )
+                    )
+            )
+            InputStream body) throws IOException {
+        return cardIssuanceService.issue(body);
+    }
+
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PatchMapping("/{id}/block")
     @Operation(summary = "Заблокировать карту", description = "Блокировка карты по идентификатору (только для администраторов)")
@@ -146,10 +250,12 @@ public class CardController {
     }
 
     @PostMapping("/transfer")
-    @Operation(summary = "Перевод средств", description = "Перевод денежных средств между картами")
+    @Operation(summary = "Перевод средств", description = "Перевод денежных средств между картами. " +
+            "Повтор запроса с тем же заголовком Idempotency-Key возвращает результат первого перевода")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Перевод выполнен успешно"),
-            @ApiResponse(responseCode = "400", description = "Ошибка перевода (недостаточно средств и т.д.)", content = @Content)
+            @ApiResponse(responseCode = "400", description = "Ошибка перевода (недостаточно средств и т.д.)", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Idempotency-Key уже использован с другим телом запроса", content = @Content)
     })
     public TransactionDTO transfer(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
@@ -170,8 +276,104 @@ public class CardController {
                     )
             )
             @RequestBody TransactionDTO transactionDTO,
+            @Parameter(description = "Ключ идемпотентности, уникальный для каждого нового перевода",
+                    example = "3f1c8f5e-8c1d-4a52-9a57-0c2b7b1f2d10")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        if (idempotencyKey == null) {
+            return cardService.transfer(transactionDTO, userDetails);
+        }
+        return idempotencyService.transfer(idempotencyKey, transactionDTO, userDetails);
+    }
+
+    @PostMapping("/transfer/batch")
+    @Operation(summary = "Пакетный перевод средств",
+            description = "Выполнение пакета переводов между картами пользователя в одной транзакции. " +
+                    "В режиме ALL_OR_NOTHING ошибка в любом переводе отменяет весь пакет, " +
+                    "в режиме BEST_EFFORT выполняются все корректные переводы")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пакет обработан, результат по каждому переводу"),
+            @ApiResponse(responseCode = "400", description = "Пакет больше допустимого размера", content = @Content),
+            @ApiResponse(responseCode = "422", description = "Пакет отклонён в режиме ALL_OR_NOTHING")
+    })
+    public List<TransferResultDTO> transferBatch(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Список переводов",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(
+                                    value = """
+                                            [
+                                              {"fromCardId": 1, "toCardId": 2, "amount": 5000},
+                                              {"fromCardId": 2, "toCardId": 3, "amount": 1000}
+                                            ]
+                                            """
+                            )
+                    )
+            )
+            @RequestBody List<TransactionDTO> transfers,
+            @Parameter(description = "Режим обработки пакета", example = "ALL_OR_NOTHING")
+            @RequestParam(value = "mode", defaultValue = "ALL_OR_NOTHING") TransferBatchMode mode,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return cardService.transferBatch(transfers, mode, userDetails);
+    }
+
+    @GetMapping("/{id}/transfers")
+    @Operation(summary = "История переводов по карте",
+            description = "Переводы по карте от новых к старым. Для следующей страницы передайте nextCreatedAt и nextId " +
+                    "предыдущего ответа в before_created_at и before_id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница истории получена"),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена", content = @Content)
+    })
+    public TransferHistoryDTO getCardTransfers(
+            @Parameter(description = "ID карты", example = "1", required = true)
+            @PathVariable("id") Long id,
+            @RequestParam(value = "before_created_at", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeCreatedAt,
+            @RequestParam(value = "before_id", required = false) Long beforeId,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return transferService.findCardHistory(id, beforeCreatedAt, beforeId, limit, userDetails);
+    }
+
+    @GetMapping("/transfers/user")
+    @Operation(summary = "История переводов пользователя",
+            description = "Переводы пользователя от новых к старым, keyset-пагинация как у истории по карте")
+    @ApiResponse(responseCode = "200", description = "Страница истории получена")
+    public TransferHistoryDTO getUserTransfers(
+            @Parameter(description = "ID пользователя", example = "123", required = true)
+            @RequestParam("id") Long id,
+            @RequestParam(value = "before_created_at", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeCreatedAt,
+            @RequestParam(value = "before_id", required = false) Long beforeId,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
-        return cardService.transfer(transactionDTO, userDetails);
+        return transferService.findUserHistory(id, beforeCreatedAt, beforeId, limit, userDetails);
+    }
+
+    @GetMapping(value = "/search", params = "mode=keyset")
+    @Operation(summary = "Поиск карт по ключу", description = "Постраничный поиск без OFFSET и подсчёта общего числа: " +
+            "для следующей страницы передайте nextCursor как cursor с теми же фильтрами и сортировкой")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница карт получена"),
+            @ApiResponse(responseCode = "400", description = "Неверный курсор или статус", content = @Content)
+    })
+    public CardSearchPageDTO searchCardsKeyset(
+            @RequestParam(value = "user_id", required = false) Long userId,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "final_date", required = false) LocalDate finalDate,
+            @Parameter(description = "Ключ сортировки: ID, FINAL_DATE или BALANCE", example = "ID")
+            @RequestParam(value = "sort_by", defaultValue = "ID") CardSortKey sortBy,
+            @Parameter(description = "Направление сортировки: desc или asc", example = "desc")
+            @RequestParam(value = "direction", defaultValue = "desc") String direction,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @Parameter(description = "Вернуть оценку общего числа карт по статистике PostgreSQL")
+            @RequestParam(value = "approximate_total", defaultValue = "false") boolean approximateTotal) {
+        return cardListingService.searchKeyset(userId, status, finalDate, sortBy, !"asc".equalsIgnoreCase(direction),
+                cursor, limit, approximateTotal);
     }
 
     @GetMapping("/search")
@@ -1,17 +1,25 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.ErrorDTO;
+import com.example.bankcards.dto.TransferResultDTO;
 import com.example.bankcards.exception.DifferentIdentifierException;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.exception.InvalidRequestException;
+import com.example.bankcards.exception.PasswordHashingOverloadedException;
+import com.example.bankcards.exception.TransferBatchRejectedException;
 import com.example.bankcards.exception.UnuniqueParameterException;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,6 +41,46 @@ public class GlobalControllerAdvice {
         return errorDTO;
     }
 
+    @ExceptionHandler(InvalidRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorDTO handleInvalidRequestException(InvalidRequestException ex) {
+        ErrorDTO errorDTO = new ErrorDTO();
+        errorDTO.setMessage(ex.getMessage());
+        errorDTO.setNumber(HttpStatus.BAD_REQUEST.value());
+        errorDTO.setDescription(HttpStatus.BAD_REQUEST.getReasonPhrase());
+
+        return errorDTO;
+    }
+
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorDTO handleIdempotencyKeyConflictException(IdempotencyKeyConflictException ex) {
+        ErrorDTO errorDTO = new ErrorDTO();
+        errorDTO.setMessage(ex.getMessage());
+        errorDTO.setNumber(HttpStatus.CONFLICT.value());
+        errorDTO.setDescription(HttpStatus.CONFLICT.getReasonPhrase());
+
+        return errorDTO;
+    }
+
+    @ExceptionHandler(TransferBatchRejectedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public List<TransferResultDTO> handleTransferBatchRejectedException(TransferBatchRejectedException ex) {
+        return ex.getResults();
+    }
+
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public ResponseEntity<ErrorDTO> handlePasswordHashingOverloadedException(PasswordHashingOverloadedException ex) {
+        ErrorDTO errorDTO = new ErrorDTO();
+        errorDTO.setMessage(ex.getMessage());
+        errorDTO.setNumber(HttpStatus.SERVICE_UNAVAILABLE.value());
+        errorDTO.setDescription(HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorDTO);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleValidationExceptions(MethodArgumentNotValidException ex) {
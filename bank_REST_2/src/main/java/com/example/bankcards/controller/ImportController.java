@@ -0,0 +1,119 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.ImportJobDTO;
+import com.example.bankcards.dto.ImportRejectedRowDTO;
+import com.example.bankcards.service.ImportService;
+import com.example.bankcards.util.ImportKind;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+@RestController
+@RequestMapping("/import")
+@RequiredArgsConstructor
+@Tag(name = "Импорт", description = "API для загрузки пользователей и карт из CSV")
+@SecurityRequirement(name = "bearerAuth") // Указываем, что нужен JWT токен
+public class ImportController {
+
+    private static final String CSV_VALUE = "text/csv";
+
+    private final ImportService importService;
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/users", consumes = CSV_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Импорт пользователей", description = "Загрузка пользователей из CSV в фоне (только для администраторов). " +
+            "Пароль - в открытом виде или готовый хеш BCrypt, пользователи получают роль ROLE_USER")
+    @ApiResponse(responseCode = "202", description = "Файл принят, задание поставлено в очередь")
+    public ImportJobDTO importUsers(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "CSV с заголовком",
+                    required = true,
+                    content = @Content(
+                            mediaType = CSV_VALUE,
+                            examples = @ExampleObject(
+                                    value = """
+                                            first_name,second_name,middle_name,email,phone_number,password
+                                            Иван,Иванов,Иванович,ivan@example.com,+79991234567,password123
+                                            """
+                            )
+                    )
+            )
+            InputStream body) throws IOException {
+        return importService.submit(ImportKind.USERS, body);
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/cards", consumes = CSV_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Импорт карт", description = "Загрузка карт из CSV в фоне (только для администраторов). " +
+            "Владелец ищется по email, пустой статус - ACTIVE")
+    @ApiResponse(responseCode = "202", description = "Файл принят, задание поставлено в очередь")
+    public ImportJobDTO importCards(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "CSV с заголовком",
+                    required = true,
+                    content = @Content(
+                            mediaType = CSV_VALUE,
+                            examples = @ExampleObject(
+                                    value = """
+                                            user_email,final_date,balance,status
+                                            ivan@example.com,2030-12-31,100000,ACTIVE
+                                            """
+                            )
+                    )
+            )
+            InputStream body) throws IOException {
+        return importService.submit(ImportKind.CARDS, body);
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/{id}")
+    @Operation(summary = "Прогресс импорта", description = "Состояние и счётчики задания импорта (только для администраторов)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Задание найдено"),
+            @ApiResponse(responseCode = "404", description = "Задание не найдено", content = @Content)
+    })
+    public ImportJobDTO getJob(
+            @Parameter(description = "ID задания", example = "7", required = true)
+            @PathVariable("id") Long id) {
+        return importService.findJob(id);
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/{id}/rejected")
+    @Operation(summary = "Отклонённые строки импорта", description = "Строки файла, которые не загружены, с причиной " +
+            "(только для администраторов). Доступны, пока задание идёт")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница отклонённых строк"),
+            @ApiResponse(responseCode = "404", description = "Задание не найдено", content = @Content)
+    })
+    public List<ImportRejectedRowDTO> getRejectedRows(
+            @Parameter(description = "ID задания", example = "7", required = true)
+            @PathVariable("id") Long id,
+            @Parameter(description = "Номер строки, после которой начинать (lineNo последней строки предыдущей страницы)", example = "0")
+            @RequestParam(value = "afterLine", defaultValue = "0") long afterLine,
+            @Parameter(description = "Размер страницы, не больше 1000", example = "100")
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return importService.findRejectedRows(id, afterLine, limit);
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.service.UserListingService;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.ExportFormat;
+import com.example.bankcards.util.ExportWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,8 +15,12 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -25,6 +32,7 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserListingService userListingService;
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping("/all")
@@ -34,6 +42,29 @@ public class UserController {
         return userService.findAllUsers();
     }
 
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    @Operation(summary = "Выгрузить пользователей", description = "Выгрузка всех пользователей без паролей " +
+            "(только для администраторов) в CSV или NDJSON, потоком по курсору БД. " +
+            "При Accept-Encoding: gzip ответ сжимается на лету")
+    @ApiResponse(responseCode = "200", description = "Выгрузка пишется в ответ")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @Parameter(description = "Формат выгрузки: CSV или NDJSON", example = "CSV")
+            @RequestParam(value = "format", defaultValue = "CSV") ExportFormat format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = ExportWriter.acceptsGzip(acceptEncoding);
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users." + format.getExtension()).build().toString())
+                .headers(headers -> {
+                    if (gzip) {
+                        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    }
+                })
+                .body(outputStream -> userListingService.exportUsers(outputStream, format, gzip));
+    }
+
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping("/")
     @Operation(summary = "Получить пользователя по ID", description = "Получение информации о пользователе по идентификатору (только для администраторов)")
@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO с итогом пакетного выпуска карт
+ */
+@Schema(description = "Итог пакетного выпуска карт")
+public record CardBulkResultDTO(
+
+        @Schema(description = "Сколько карт получено", example = "50000")
+        int received,
+
+        @Schema(description = "Сколько карт выпущено", example = "49998")
+        int created,
+
+        @Schema(description = "Карты, которые не выпущены, с причиной")
+        List<CardIssueErrorDTO> errors
+) {
+}
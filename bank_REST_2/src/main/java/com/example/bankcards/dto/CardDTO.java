@@ -2,13 +2,16 @@ package com.example.bankcards.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import io.swagger.v3.oas.annotations.media.Schema;
+import com.example.bankcards.util.Status;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDate;
 
 @Getter
 @Setter
+@NoArgsConstructor
 @Schema(description = "Данные банковской карты")
 public class CardDTO {
 
@@ -28,4 +31,15 @@ public class CardDTO {
 
     @Schema(description = "ID владельца карты", example = "123")
     private Long userId;
-}
\ No newline at end of file
+
+    /**
+     * Конструктор для JPQL-выражения select new, см. CardRepository#findCardDTOsByUserId
+     */
+    public CardDTO(Long id, LocalDate finalDate, Status status, Long balance, Long userId) {
+        this.id = id;
+        this.finalDate = finalDate;
+        this.status = status.toString();
+        this.balance = balance;
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+/**
+ * DTO со строкой выгрузки карт: карта и её владелец
+ */
+@Schema(description = "Карта с данными владельца")
+public record CardExportDTO(
+
+        @Schema(description = "ID карты", example = "1")
+        Long id,
+
+        @JsonFormat(pattern = "yyyy-MM-dd")
+        @Schema(description = "Дата окончания действия карты", example = "2025-12-31")
+        LocalDate finalDate,
+
+        @Schema(description = "Статус карты", example = "ACTIVE")
+        String status,
+
+        @Schema(description = "Баланс карты в копейках", example = "150000")
+        Long balance,
+
+        @Schema(description = "ID владельца карты", example = "123")
+        Long userId,
+
+        @Schema(description = "Email владельца", example = "user@example.com")
+        String email,
+
+        @Schema(description = "Имя владельца", example = "Иван")
+        String firstName,
+
+        @Schema(description = "Фамилия владельца", example = "Иванов")
+        String secondName,
+
+        @Schema(description = "Отчество владельца", example = "Иванович")
+        String middleName,
+
+        @Schema(description = "Телефон владельца", example = "+79991234567")
+        String phoneNumber
+) {
+}
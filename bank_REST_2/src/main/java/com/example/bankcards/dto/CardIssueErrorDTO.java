@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO с ошибкой выпуска одной карты из пакета
+ */
+@Schema(description = "Карта из пакета, которая не выпущена")
+public record CardIssueErrorDTO(
+
+        @Schema(description = "Порядковый номер карты во входных данных", example = "17")
+        int index,
+
+        @Schema(description = "ID владельца карты", example = "123")
+        Long userId,
+
+        @Schema(description = "Причина отказа", example = "Владелец карты не найден")
+        String message
+) {
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO страницы списка карт при постраничной выдаче по ключу
+ * Для следующей страницы значение nextAfter передаётся как after
+ */
+@Schema(description = "Страница списка карт")
+public record CardPageDTO(
+
+        @Schema(description = "Карты по возрастанию ID")
+        List<CardDTO> content,
+
+        @Schema(description = "ID последней карты страницы, пусто если страница последняя")
+        Long nextAfter
+) {
+}
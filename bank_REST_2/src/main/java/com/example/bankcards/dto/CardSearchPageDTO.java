@@ -0,0 +1,24 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO страницы поиска карт по ключу (mode=keyset)
+ * Для следующей страницы значение nextCursor передаётся как cursor с теми же фильтрами и сортировкой
+ */
+@Schema(description = "Страница поиска карт")
+public record CardSearchPageDTO(
+
+        @Schema(description = "Найденные карты в порядке сортировки")
+        List<CardDTO> content,
+
+        @Schema(description = "Курсор следующей страницы, пусто если страница последняя")
+        String nextCursor,
+
+        @Schema(description = "Оценка общего числа найденных карт по статистике планировщика PostgreSQL, " +
+                "заполняется при approximate_total=true")
+        Long approximateTotal
+) {
+}
@@ -0,0 +1,45 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.util.ImportJobStatus;
+import com.example.bankcards.util.ImportKind;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO с состоянием задания импорта из CSV
+ */
+@Schema(description = "Задание импорта и его прогресс")
+public record ImportJobDTO(
+
+        @Schema(description = "ID задания", example = "7")
+        Long id,
+
+        @Schema(description = "Что импортируется", example = "USERS")
+        ImportKind kind,
+
+        @Schema(description = "Состояние задания", example = "RUNNING")
+        ImportJobStatus status,
+
+        @Schema(description = "Сколько строк данных прочитано", example = "120000")
+        long rowsRead,
+
+        @Schema(description = "Сколько строк загружено", example = "119870")
+        long rowsImported,
+
+        @Schema(description = "Сколько строк отклонено", example = "130")
+        long rowsRejected,
+
+        @Schema(description = "Ошибка, остановившая задание")
+        String error,
+
+        @Schema(description = "Когда файл принят")
+        LocalDateTime createdAt,
+
+        @Schema(description = "Когда началась загрузка")
+        LocalDateTime startedAt,
+
+        @Schema(description = "Когда загрузка закончилась")
+        LocalDateTime finishedAt
+) {
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO с отклонённой строкой файла импорта
+ */
+@Schema(description = "Строка CSV, которая не загружена")
+public record ImportRejectedRowDTO(
+
+        @Schema(description = "Номер строки в файле, заголовок - строка 1", example = "42")
+        long lineNo,
+
+        @Schema(description = "Причина отказа", example = "Email уже занят")
+        String reason,
+
+        @Schema(description = "Исходная строка файла")
+        String rawLine
+) {
+}
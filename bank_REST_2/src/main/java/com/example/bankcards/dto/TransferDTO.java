@@ -0,0 +1,30 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO записи журнала переводов
+ */
+@Schema(description = "Выполненный перевод из журнала")
+public record TransferDTO(
+
+        @Schema(description = "ID записи журнала", example = "1")
+        Long id,
+
+        @Schema(description = "ID карты отправителя", example = "1")
+        Long fromCardId,
+
+        @Schema(description = "ID карты получателя", example = "2")
+        Long toCardId,
+
+        @Schema(description = "Сумма перевода в копейках", example = "5000")
+        Long amount,
+
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSS")
+        @Schema(description = "Время перевода", example = "2025-06-01T12:30:00.000000")
+        LocalDateTime createdAt
+) {
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO страницы истории переводов
+ * Для следующей страницы значения nextCreatedAt и nextId передаются как before_created_at и before_id
+ */
+@Schema(description = "Страница истории переводов")
+public record TransferHistoryDTO(
+
+        @Schema(description = "Переводы, от новых к старым")
+        List<TransferDTO> content,
+
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSS")
+        @Schema(description = "Время последнего перевода страницы, пусто если страница последняя")
+        LocalDateTime nextCreatedAt,
+
+        @Schema(description = "ID последнего перевода страницы, пусто если страница последняя")
+        Long nextId
+) {
+}
@@ -0,0 +1,33 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.util.TransferResultStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO с результатом одного перевода из пакета
+ */
+@Schema(description = "Результат перевода из пакета")
+public record TransferResultDTO(
+
+        @Schema(description = "Порядковый номер перевода в пакете", example = "0")
+        int index,
+
+        @Schema(description = "ID карты отправителя", example = "1")
+        Long fromCardId,
+
+        @Schema(description = "ID карты получателя", example = "2")
+        Long toCardId,
+
+        @Schema(description = "Сумма перевода в копейках", example = "5000")
+        Long amount,
+
+        @Schema(description = "Итог перевода", example = "APPLIED")
+        TransferResultStatus status,
+
+        @Schema(description = "Причина отказа", example = "Недостаточно средств")
+        String message
+) {
+    public TransferResultDTO withStatus(TransferResultStatus newStatus) {
+        return new TransferResultDTO(index, fromCardId, toCardId, amount, newStatus, message);
+    }
+}
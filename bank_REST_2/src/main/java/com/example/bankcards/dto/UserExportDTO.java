@@ -0,0 +1,32 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO со строкой выгрузки пользователей, без пароля
+ */
+@Schema(description = "Пользователь в выгрузке")
+public record UserExportDTO(
+
+        @Schema(description = "ID пользователя", example = "1")
+        Long id,
+
+        @Schema(description = "Имя пользователя", example = "Иван")
+        String firstName,
+
+        @Schema(description = "Фамилия пользователя", example = "Иванов")
+        String secondName,
+
+        @Schema(description = "Отчество пользователя", example = "Иванович")
+        String middleName,
+
+        @Schema(description = "Email адрес", example = "user@example.com")
+        String email,
+
+        @Schema(description = "Номер телефона", example = "+79991234567")
+        String phoneNumber,
+
+        @Schema(description = "Роли через пробел", example = "ROLE_USER")
+        String roles
+) {
+}
@@ -4,6 +4,10 @@ import com.example.bankcards.util.Status;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.time.LocalDate;
 
@@ -13,6 +17,9 @@ import java.time.LocalDate;
  * Является сущностью
  * Класс предоставляет данные о картах
  * имеет связь с таблицей card_user в виде "Многие к одному"
+ * Поле version используется для оптимистической блокировки
+ * Владелец загружается лениво: для CardDTO нужен только user_id, который есть у прокси без запроса к users
+ * Ключ берётся из cards_seq блоками по 50 (pooled-lo), поэтому вставки карт собираются в JDBC-пакеты
  */
 @Getter
 @Setter
@@ -21,19 +28,30 @@ import java.time.LocalDate;
 public class Card {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    // Оптимизатор задан только здесь: глобальная настройка перевела бы на pooled-lo и transfers_seq
+    @GenericGenerator(name = "cards_seq", type = SequenceStyleGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "cards_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+            @Parameter(name = OptimizableGenerator.OPT_PARAM, value = "pooled-lo")
+    })
     private Long id;
 
     @Column(name = "final_date", nullable = false)
     private LocalDate finalDate;
 
+    @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     private Status status;
 
     @Column(name = "balance", nullable = false)
     private Long balance;
 
-    @ManyToOne
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 }
@@ -0,0 +1,55 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Этот класс представляет данные таблицы idempotency_keys в виде объекта класса IdempotencyKey
+ * Снабжён геттерами и сеттерами через Lombock
+ * Является сущностью
+ * Хранит результат перевода по ключу Idempotency-Key, ключ уникален в пределах пользователя
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "idempotency_keys")
+@IdClass(IdempotencyKey.PrimaryKey.class)
+public class IdempotencyKey {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(name = "idempotency_key", nullable = false)
+    private String key;
+
+    @Column(name = "request_hash", nullable = false)
+    private String requestHash;
+
+    @Column(name = "response_body")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class PrimaryKey implements Serializable {
+        private Long userId;
+        private String key;
+    }
+}
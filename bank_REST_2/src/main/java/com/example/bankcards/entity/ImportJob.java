@@ -0,0 +1,56 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.util.ImportJobStatus;
+import com.example.bankcards.util.ImportKind;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Этот класс представляет данные таблицы import_jobs в виде объекта класса ImportJob
+ * Снабжён геттерами и сеттерами через Lombock
+ * Является сущностью
+ * Хранит состояние и счётчики задания импорта из CSV. Во время загрузки счётчики и статус
+ * обновляются SQL-запросами ImportService, сущность используется для создания задания и чтения прогресса
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "import_jobs")
+public class ImportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false)
+    private ImportKind kind;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ImportJobStatus status;
+
+    @Column(name = "rows_read", nullable = false)
+    private long rowsRead;
+
+    @Column(name = "rows_imported", nullable = false)
+    private long rowsImported;
+
+    @Column(name = "rows_rejected", nullable = false)
+    private long rowsRejected;
+
+    @Column(name = "error")
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Этот класс представляет данные таблицы transfers в виде объекта класса Transfer
+ * Снабжён геттерами и сеттерами через Lombock
+ * Является сущностью
+ * Класс хранит запись журнала о выполненном переводе между картами
+ * Карты и пользователь хранятся идентификаторами, чтобы запись журнала переживала удаление карты
+ * Таблица секционирована по месяцам по полю created_at
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "transfers")
+public class Transfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfers_seq")
+    @SequenceGenerator(name = "transfers_seq", sequenceName = "transfers_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "from_card_id", nullable = false)
+    private Long fromCardId;
+
+    @Column(name = "to_card_id", nullable = false)
+    private Long toCardId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "amount", nullable = false)
+    private Long amount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -3,6 +3,10 @@ package com.example.bankcards.entity;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -21,7 +25,13 @@ import java.util.Set;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    // Оптимизатор задан только здесь: глобальная настройка перевела бы на pooled-lo и transfers_seq
+    @GenericGenerator(name = "users_seq", type = SequenceStyleGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "users_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+            @Parameter(name = OptimizableGenerator.OPT_PARAM, value = "pooled-lo")
+    })
     private Long id;
 
     @Column(name = "first_name", nullable = false)
@@ -42,6 +52,13 @@ public class User {
     @Column(name = "phone_number", nullable = false)
     private String phoneNumber;
 
+    /**
+     * Версия выданных JWT. Меняется только запросом UsersRepository.incrementTokenVersion,
+     * поэтому сохранение пользователя из UserDTO её не перезаписывает
+     */
+    @Column(name = "token_version", insertable = false, updatable = false)
+    private Long tokenVersion;
+
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
@@ -0,0 +1,10 @@
+package com.example.bankcards.exception;
+
+/**
+ * Кастомное исключение для повторного использования ключа Idempotency-Key с другим телом запроса
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
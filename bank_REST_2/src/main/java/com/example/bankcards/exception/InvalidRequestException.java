@@ -0,0 +1,10 @@
+package com.example.bankcards.exception;
+
+/**
+ * Кастомное исключение для некорректных параметров запроса (ответ 400)
+ */
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
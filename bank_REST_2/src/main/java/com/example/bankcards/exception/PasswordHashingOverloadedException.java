@@ -0,0 +1,18 @@
+package com.example.bankcards.exception;
+
+import lombok.Getter;
+
+/**
+ * Кастомное исключение для отказа в проверке или хешировании пароля, когда очередь BCrypt заполнена
+ * Содержит время в секундах, через которое клиенту стоит повторить запрос (заголовок Retry-After)
+ */
+@Getter
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.exception;
+
+import com.example.bankcards.dto.TransferResultDTO;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Кастомное исключение для отказа пакета переводов в режиме ALL_OR_NOTHING
+ * Содержит результаты по каждому переводу, чтобы клиент видел причину отказа
+ */
+@Getter
+public class TransferBatchRejectedException extends RuntimeException {
+
+    private final List<TransferResultDTO> results;
+
+    public TransferBatchRejectedException(String message, List<TransferResultDTO> results) {
+        super(message);
+        this.results = results;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.mapper;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferDTO;
+import com.example.bankcards.entity.Transfer;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Маппер, отдельный класс для выполнения операций по переводу записей журнала переводов в DTO и наоборот
+ */
+
+@Component
+public class TransferMapper {
+
+    public Transfer makeATransfer(TransactionDTO transactionDTO, Long userId, LocalDateTime createdAt) {
+        Transfer transfer = new Transfer();
+
+        transfer.setFromCardId(transactionDTO.fromCardId());
+        transfer.setToCardId(transactionDTO.toCardId());
+        transfer.setAmount(transactionDTO.amount());
+        transfer.setUserId(userId);
+        transfer.setCreatedAt(createdAt);
+
+        return transfer;
+    }
+
+    public TransferDTO makeATransferDTO(Transfer transfer) {
+        return new TransferDTO(
+                transfer.getId(),
+                transfer.getFromCardId(),
+                transfer.getToCardId(),
+                transfer.getAmount(),
+                transfer.getCreatedAt()
+        );
+    }
+}
@@ -3,14 +3,12 @@ package com.example.bankcards.mapper;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
-import com.example.bankcards.repository.RoleRepository;
-import com.example.bankcards.util.RoleEnum;
+import com.example.bankcards.service.RoleRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Маппер, отдельный класс для выполнения операций по переводу сущности пользователя в DTO и наоборот
@@ -20,7 +18,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class UserMapper {
 
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
 
     public User makeAUser(UserDTO userDTO) {
         User user = new User();
@@ -32,14 +30,11 @@ public class UserMapper {
         user.setEmail(userDTO.getEmail());
         user.setPassword(userDTO.getPassword());
         user.setPhoneNumber(userDTO.getPhoneNumber());
-        // Конвертируем Set<String> в Set<Role>
+        // Роли из DTO заменяются ролями справочника по имени, без запросов к БД
         Set<Role> roles = new HashSet<>();
         if (userDTO.getRole() != null) {
             for (Role currentRole : userDTO.getRole()) {
-                RoleEnum roleName = currentRole.getName();
-                Role role = roleRepository.findByName(roleName)
-                        .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
-                roles.add(role);
+                roles.add(roleRegistry.get(currentRole.getName()));
             }
         }
         user.setRole(roles);
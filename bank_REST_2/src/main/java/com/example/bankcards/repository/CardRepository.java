@@ -1,10 +1,17 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,5 +24,48 @@ import java.util.Optional;
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card> {
     List<Card> findAllByUserId(Long userId);
+
+    /**
+     * Карты пользователя сразу в виде CardDTO: читаются только столбцы cards, users не загружается
+     */
+    @Query("select new com.example.bankcards.dto.CardDTO(c.id, c.finalDate, c.status, c.balance, c.user.id) " +
+            "from Card c where c.user.id = :userId order by c.id")
+    List<CardDTO> findCardDTOsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Загружает карту с блокировкой строки (SELECT ... FOR UPDATE) до конца текущей транзакции
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Загружает карты с блокировкой строк, строки блокируются в порядке возрастания id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Списывает сумму одним UPDATE, если карта активна, принадлежит пользователю и на ней достаточно средств
+     *
+     * @return число изменённых строк, 0 если хотя бы одно условие не выполнено
+     */
+    @Modifying
+    @Query("update Card c set c.balance = c.balance - :amount, c.version = c.version + 1 " +
+            "where c.id = :id and c.user.id = :userId " +
+            "and c.status = com.example.bankcards.util.Status.ACTIVE and c.balance >= :amount")
+    int debit(@Param("id") Long id, @Param("userId") Long userId, @Param("amount") Long amount);
+
+    /**
+     * Зачисляет сумму одним UPDATE, если карта активна и принадлежит пользователю
+     *
+     * @return число изменённых строк, 0 если хотя бы одно условие не выполнено
+     */
+    @Modifying
+    @Query("update Card c set c.balance = c.balance + :amount, c.version = c.version + 1 " +
+            "where c.id = :id and c.user.id = :userId " +
+            "and c.status = com.example.bankcards.util.Status.ACTIVE")
+    int credit(@Param("id") Long id, @Param("userId") Long userId, @Param("amount") Long amount);
 }
 
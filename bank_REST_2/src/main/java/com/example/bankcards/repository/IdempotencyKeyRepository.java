@@ -0,0 +1,77 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Репозиторий отвечающий за работу с таблицей ключей идемпотентности
+ *
+ * @see IdempotencyKey
+ */
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, IdempotencyKey.PrimaryKey> {
+
+    /**
+     * Занимает ключ для выполнения перевода. Просроченная запись с тем же ключом перезаписывается.
+     * Если ключ уже занят параллельной транзакцией, PostgreSQL дожидается её завершения
+     *
+     * @return 1 если ключ занят этим запросом, 0 если по ключу уже есть действующий результат
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (user_id, idempotency_key, request_hash, created_at, expires_at)
+            VALUES (:userId, :key, :requestHash, :now, :expiresAt)
+            ON CONFLICT (user_id, idempotency_key) DO UPDATE
+                SET request_hash = EXCLUDED.request_hash,
+                    response_body = NULL,
+                    created_at = EXCLUDED.created_at,
+                    expires_at = EXCLUDED.expires_at
+                WHERE idempotency_keys.expires_at < :now
+            """, nativeQuery = true)
+    int claim(@Param("userId") Long userId,
+              @Param("key") String key,
+              @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query(value = """
+            UPDATE idempotency_keys SET response_body = :responseBody
+            WHERE user_id = :userId AND idempotency_key = :key
+            """, nativeQuery = true)
+    int complete(@Param("userId") Long userId,
+                 @Param("key") String key,
+                 @Param("responseBody") String responseBody);
+
+    /**
+     * Освобождает ключ, по которому перевод отклонён и результат не сохранён
+     */
+    @Modifying
+    @Query(value = """
+            DELETE FROM idempotency_keys
+            WHERE user_id = :userId AND idempotency_key = :key AND response_body IS NULL
+            """, nativeQuery = true)
+    int release(@Param("userId") Long userId,
+                @Param("key") String key);
+
+    /**
+     * Удаляет не больше limit просроченных ключей в собственной короткой транзакции
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM idempotency_keys
+            WHERE (user_id, idempotency_key) IN (
+                SELECT user_id, idempotency_key FROM idempotency_keys
+                WHERE expires_at < :now
+                LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
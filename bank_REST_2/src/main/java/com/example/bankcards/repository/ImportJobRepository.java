@@ -0,0 +1,14 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Репозиторий отвечающий за работу с таблицей заданий импорта
+ *
+ * @see ImportJob
+ */
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+}
@@ -0,0 +1,55 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Transfer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Репозиторий отвечающий за работу с журналом переводов
+ * История выбирается keyset-пагинацией по (created_at, id) без OFFSET и count(*)
+ *
+ * @see Transfer
+ */
+@Repository
+public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    /**
+     * Переводы по карте (как отправителя, так и получателя), строго старше курсора (createdAt, id)
+     */
+    @Query(value = """
+            SELECT * FROM (
+                (SELECT * FROM transfers
+                 WHERE from_card_id = :cardId AND (created_at, id) < (:createdAt, :id)
+                 ORDER BY created_at DESC, id DESC LIMIT :limit)
+                UNION ALL
+                (SELECT * FROM transfers
+                 WHERE to_card_id = :cardId AND (created_at, id) < (:createdAt, :id)
+                 ORDER BY created_at DESC, id DESC LIMIT :limit)
+            ) t
+            ORDER BY t.created_at DESC, t.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Transfer> findCardHistory(@Param("cardId") Long cardId,
+                                   @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("id") Long id,
+                                   @Param("limit") int limit);
+
+    /**
+     * Переводы пользователя, строго старше курсора (createdAt, id)
+     */
+    @Query(value = """
+            SELECT * FROM transfers
+            WHERE user_id = :userId AND (created_at, id) < (:createdAt, :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Transfer> findUserHistory(@Param("userId") Long userId,
+                                   @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("id") Long id,
+                                   @Param("limit") int limit);
+}
@@ -2,9 +2,14 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Репозиторий отвечающий за работу с таблицей указанной в сущности CardUser
@@ -15,4 +20,24 @@ public interface UsersRepository extends JpaRepository<User, Long> {
     Boolean existsByEmail(String email);
     Boolean existsByPhoneNumber(String phone);
     Optional<User> findByEmail(String email);
+
+    /**
+     * Из переданных id возвращает те, пользователи с которыми существуют, одним запросом
+     */
+    @Query("select u.id from User u where u.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select u.tokenVersion from User u where u.id = :id")
+    Optional<Long> findTokenVersionById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    /**
+     * Увеличивает версию токенов пользователя, ранее выданные JWT перестают приниматься
+     */
+    @Modifying
+    @Query(value = "UPDATE users SET token_version = token_version + 1 WHERE id = :id", nativeQuery = true)
+    int incrementTokenVersion(@Param("id") Long id);
 }
\ No newline at end of file
@@ -6,7 +6,6 @@ import com.example.bankcards.entity.Role;
 import com.example.bankcards.exception.UnuniqueParameterException;
 import com.example.bankcards.repository.UsersRepository;
 import com.example.bankcards.util.RoleEnum;
-import com.example.bankcards.repository.RoleRepository;
 import com.example.bankcards.util.JwtUtils;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
@@ -33,7 +32,7 @@ public class AuthService {
 
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder encoder;
     private final JwtUtils jwtUtils;
 
@@ -69,24 +68,16 @@ public class AuthService {
         Set<Role> roles = new HashSet<>();
 
         if (strRoles == null) {
-            Role userRole = roleRepository.findByName(RoleEnum.ROLE_USER)
-                    .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-            roles.add(userRole);
+            roles.add(roleRegistry.get(RoleEnum.ROLE_USER));
         } else {
-            Set<RoleEnum> rolesToFind = strRoles.stream()
+            strRoles.stream()
                     .map(role -> {
                         if (role.getName().equals(RoleEnum.ROLE_ADMIN)) return RoleEnum.ROLE_ADMIN;
                         return RoleEnum.ROLE_USER;
                     })
-                    .collect(Collectors.toSet());
-
-            List<Role> foundRoles = roleRepository.findByNameIn(rolesToFind);
-
-            if (foundRoles.size() != rolesToFind.size()) {
-                throw new RuntimeException("Error: Some roles were not found.");
-            }
-
-            roles.addAll(foundRoles);
+                    .distinct()
+                    .map(roleRegistry::get)
+                    .forEach(roles::add);
         }
 
         userDTO.setRole(roles);
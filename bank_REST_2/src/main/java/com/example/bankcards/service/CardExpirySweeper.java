@@ -0,0 +1,142 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Переводит активные карты с истёкшим сроком действия (final_date раньше сегодняшнего дня) в статус OUTDATED.
+ * Карты выбираются по частичному индексу idx_cards_active_final_date и обновляются частями по cards.expiry.chunk-size,
+ * каждая часть - отдельная короткая транзакция UPDATE ... WHERE id IN (...), между частями пауза cards.expiry.pause,
+ * поэтому задача не держит блокировки долго. Строки, заблокированные переводами, пропускаются (SKIP LOCKED)
+ * и достаются следующему запуску.
+ * Задача выполняется только на одном узле: каждая часть сначала берёт транзакционный advisory lock PostgreSQL
+ * (pg_try_advisory_xact_lock), который снимается вместе с транзакцией части, в том числе при ошибке или обрыве
+ * соединения. Узел, не получивший блокировку, пропускает запуск.
+ * В режиме SHARDED статус обновляется и в памяти шардов
+ */
+@Slf4j
+@Component
+public class CardExpirySweeper {
+
+    /**
+     * Ключ advisory lock, общий для всех узлов
+     */
+    static final long LOCK_KEY = 20_250_025L;
+
+    private static final String OUTDATE_CHUNK_SQL = """
+            UPDATE cards SET status = 'OUTDATED', version = version + 1
+            WHERE id IN (SELECT id FROM cards
+                         WHERE status = 'ACTIVE' AND final_date < ?
+                         ORDER BY final_date, id
+                         LIMIT ?
+                         FOR UPDATE SKIP LOCKED)
+              AND status = 'ACTIVE'
+            RETURNING id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final ObjectProvider<ShardedBalanceEngine> shardedBalanceEngine;
+    private final int chunkSize;
+    private final Duration pause;
+    private final Counter outdated;
+    private final Timer runDuration;
+
+    public CardExpirySweeper(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectProvider<ShardedBalanceEngine> shardedBalanceEngine,
+                             MeterRegistry meterRegistry,
+                             @Value("${cards.expiry.chunk-size:1000}") int chunkSize,
+                             @Value("${cards.expiry.pause:100ms}") Duration pause) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.shardedBalanceEngine = shardedBalanceEngine;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+        this.outdated = Counter.builder("cards.expiry.outdated")
+                .description("Карты, переведённые в OUTDATED по истечении срока действия")
+                .register(meterRegistry);
+        this.runDuration = Timer.builder("cards.expiry.run")
+                .description("Длительность прохода по просроченным картам на узле, получившем блокировку")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${cards.expiry.cron:0 5 * * * *}")
+    public void sweepExpired() {
+        sweep();
+    }
+
+    /**
+     * Один проход по просроченным картам
+     *
+     * @return число карт, переведённых в OUTDATED, 0 если проход выполняет другой узел
+     */
+    public int sweep() {
+        long startedAt = System.nanoTime();
+        OptionalInt total = outdateExpired(LocalDate.now());
+        if (total.isEmpty()) {
+            log.debug("Просроченные карты обрабатывает другой узел");
+            return 0;
+        }
+        runDuration.record(Duration.ofNanos(System.nanoTime() - startedAt));
+        if (total.getAsInt() > 0) {
+            log.info("Переведено в OUTDATED просроченных карт: {}", total.getAsInt());
+        }
+        return total.getAsInt();
+    }
+
+    /**
+     * @return число переведённых карт, пусто если первую часть не удалось заблокировать
+     */
+    private OptionalInt outdateExpired(LocalDate today) {
+        int total = 0;
+        while (true) {
+            List<Long> ids = transaction.execute(status -> tryLock()
+                    ? jdbcTemplate.queryForList(OUTDATE_CHUNK_SQL, Long.class, today.atStartOfDay(), chunkSize)
+                    : null);
+            if (ids == null) {
+                // Во время паузы между частями блокировку взял другой узел, оставшиеся карты достаются ему
+                return total == 0 ? OptionalInt.empty() : OptionalInt.of(total);
+            }
+            if (ids.isEmpty()) {
+                return OptionalInt.of(total);
+            }
+            shardedBalanceEngine.ifAvailable(engine -> ids.forEach(id -> engine.updateStatus(id, Status.OUTDATED)));
+            outdated.increment(ids.size());
+            total += ids.size();
+
+            if (ids.size() < chunkSize) {
+                return OptionalInt.of(total);
+            }
+            try {
+                Thread.sleep(pause.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return OptionalInt.of(total);
+            }
+        }
+    }
+
+    /**
+     * Блокировка до конца текущей транзакции, вызывается внутри транзакции части
+     */
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class,
+                LOCK_KEY));
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardBulkResultDTO;
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardIssueErrorDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.Status;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Класс сервис для пакетного выпуска карт (POST /cards/bulk).
+ * Карты читаются из тела запроса потоком (JSON-массив или NDJSON) и обрабатываются частями по chunk-size:
+ * строки с ошибками в данных отсеиваются, владельцы части проверяются одним запросом, остальные карты
+ * вставляются одной транзакцией JDBC-пакетами по batch-size (ключи из cards_seq, см. {@link Card}).
+ * Если транзакция части падает (например, владельца удалили после проверки), её карты вставляются по одной,
+ * и ошибка достаётся только своей строке. Остальные части от этого не зависят.
+ * Новые карты выпускаются активными, если статус не указан; id из входных данных не используется
+ *
+ * @see com.example.bankcards.controller.CardController
+ */
+@Slf4j
+@Service
+public class CardIssuanceService {
+
+    private final UsersRepository usersRepository;
+    private final EntityManager entityManager;
+    private final ObjectReader cardReader;
+    private final TransactionTemplate transaction;
+    private final int chunkSize;
+    private final int batchSize;
+
+    public CardIssuanceService(UsersRepository usersRepository,
+                               EntityManager entityManager,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${cards.bulk.chunk-size:1000}") int chunkSize,
+                               @Value("${cards.bulk.batch-size:500}") int batchSize) {
+        this.usersRepository = usersRepository;
+        this.entityManager = entityManager;
+        this.cardReader = objectMapper.readerFor(CardDTO.class);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Выпускает карты из потока CardDTO. Строка, которая не отображается в CardDTO (например, дата или баланс
+     * неверного формата), попадает в ошибки, и чтение продолжается со следующей строки.
+     * Синтаксически некорректный JSON останавливает чтение: уже прочитанные карты выпускаются,
+     * а ошибка попадает в ответ под номером первой непрочитанной строки
+     */
+    public CardBulkResultDTO issue(InputStream body) throws IOException {
+        List<CardIssueErrorDTO> errors = new ArrayList<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        int received = 0;
+        int created = 0;
+
+        try (MappingIterator<CardDTO> cards = cardReader.readValues(body)) {
+            while (true) {
+                CardDTO card;
+                try {
+                    if (!cards.hasNextValue()) {
+                        break;
+                    }
+                    card = cards.nextValue();
+                } catch (JsonMappingException e) {
+                    // MappingIterator пропускает остаток строки и продолжает со следующей
+                    errors.add(new CardIssueErrorDTO(received++, null,
+                            "Некорректная запись: " + e.getOriginalMessage()));
+                    continue;
+                } catch (JsonParseException e) {
+                    errors.add(new CardIssueErrorDTO(received, null,
+                            "Некорректный JSON, чтение остановлено: " + e.getOriginalMessage()));
+                    break;
+                }
+
+                chunk.add(new Row(received++, card));
+                if (chunk.size() == chunkSize) {
+                    created += issueChunk(chunk, errors);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            created += issueChunk(chunk, errors);
+        }
+
+        errors.sort(Comparator.comparingInt(CardIssueErrorDTO::index));
+        return new CardBulkResultDTO(received, created, errors);
+    }
+
+    private int issueChunk(List<Row> chunk, List<CardIssueErrorDTO> errors) {
+        List<Row> valid = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            String problem = validate(row.card());
+            if (problem == null) {
+                valid.add(row);
+            } else {
+                errors.add(error(row, problem));
+            }
+        }
+        if (valid.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> owners = usersRepository.findExistingIds(valid.stream()
+                .map(row -> row.card().getUserId())
+                .collect(Collectors.toSet()));
+        List<Row> insertable = new ArrayList<>(valid.size());
+        for (Row row : valid) {
+            if (owners.contains(row.card().getUserId())) {
+                insertable.add(row);
+            } else {
+                errors.add(error(row, "Владелец карты не найден"));
+            }
+        }
+        if (insertable.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            transaction.executeWithoutResult(status -> insert(insertable));
+            return insertable.size();
+        } catch (DataAccessException | PersistenceException e) {
+            log.warn("Часть из {} карт не вставлена одной транзакцией, вставляем по одной: {}",
+                    insertable.size(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+
+        int created = 0;
+        for (Row row : insertable) {
+            try {
+                transaction.executeWithoutResult(status -> insert(List.of(row)));
+                created++;
+            } catch (DataAccessException | PersistenceException e) {
+                errors.add(error(row, NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+            }
+        }
+        return created;
+    }
+
+    private void insert(List<Row> rows) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        for (Row row : rows) {
+            CardDTO cardDTO = row.card();
+            Card card = new Card();
+            card.setFinalDate(cardDTO.getFinalDate());
+            card.setBalance(cardDTO.getBalance());
+            card.setStatus(cardDTO.getStatus() == null ? Status.ACTIVE : Status.valueOf(cardDTO.getStatus().toUpperCase()));
+            card.setUser(entityManager.getReference(User.class, cardDTO.getUserId()));
+            entityManager.persist(card);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private String validate(CardDTO cardDTO) {
+        if (cardDTO == null) {
+            return "Пустая запись";
+        }
+        if (cardDTO.getUserId() == null) {
+            return "Не указан владелец карты";
+        }
+        if (cardDTO.getFinalDate() == null) {
+            return "Не указана дата окончания действия карты";
+        }
+        if (cardDTO.getBalance() == null) {
+            return "Не указан баланс карты";
+        }
+        if (cardDTO.getBalance() < 0) {
+            return "Баланс карты не может быть отрицательным";
+        }
+        if (cardDTO.getStatus() != null) {
+            try {
+                Status.valueOf(cardDTO.getStatus().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return "Неизвестный статус карты: " + cardDTO.getStatus();
+            }
+        }
+        return null;
+    }
+
+    private CardIssueErrorDTO error(Row row, String message) {
+        return new CardIssueErrorDTO(row.index(), row.card() == null ? null : row.card().getUserId(), message);
+    }
+
+    private record Row(int index, CardDTO card) {
+    }
+}
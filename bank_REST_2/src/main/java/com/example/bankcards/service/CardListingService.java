@@ -0,0 +1,286 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardExportDTO;
+import com.example.bankcards.dto.CardPageDTO;
+import com.example.bankcards.dto.CardSearchPageDTO;
+import com.example.bankcards.exception.InvalidRequestException;
+import com.example.bankcards.util.CardSearchCursor;
+import com.example.bankcards.util.CardSortKey;
+import com.example.bankcards.util.ExportFormat;
+import com.example.bankcards.util.ExportWriter;
+import com.example.bankcards.util.Status;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Класс сервис для выдачи списка всех карт без загрузки сущностей.
+ * Карты читаются через JDBC сразу в CardDTO: полный список пишется в ответ потоком (JSON-массив или NDJSON)
+ * по курсору PostgreSQL с fetch-size строк за раз, поэтому память не зависит от размера таблицы;
+ * постраничная выдача и поиск в режиме keyset используют условие по ключу сортировки вместо OFFSET и не считают count(*).
+ * Выгрузка карт с владельцами (CSV или NDJSON, при необходимости в gzip) читается так же потоком
+ *
+ * @see com.example.bankcards.controller.CardController
+ */
+@Service
+public class CardListingService {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
+    private static final int MAX_LIMIT = 1000;
+
+    private static final String SELECT_CARDS = "SELECT id, final_date, status, balance, user_id FROM cards";
+
+    private static final String SELECT_CARDS_WITH_OWNERS = "SELECT c.id, c.final_date, c.status, c.balance, c.user_id, "
+            + "u.email, u.first_name, u.second_name, u.middle_name, u.phone_number "
+            + "FROM cards c LEFT JOIN users u ON u.id = c.user_id";
+
+    private static final String[] EXPORT_COLUMNS = {"id", "final_date", "status", "balance", "user_id",
+            "email", "first_name", "second_name", "middle_name", "phone_number"};
+
+    private static final RowMapper<CardDTO> CARD_ROW_MAPPER = (rs, rowNum) -> {
+        CardDTO cardDTO = new CardDTO();
+        cardDTO.setId(rs.getLong("id"));
+        cardDTO.setFinalDate(rs.getTimestamp("final_date").toLocalDateTime().toLocalDate());
+        cardDTO.setStatus(rs.getString("status"));
+        cardDTO.setBalance(rs.getLong("balance"));
+        cardDTO.setUserId(rs.getObject("user_id", Long.class));
+        return cardDTO;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter objectWriter;
+
+    public CardListingService(DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${cards.stream.fetch-size:1000}") int fetchSize) {
+        // Отдельный JdbcTemplate: PostgreSQL отдаёт строки порциями только при fetch size > 0 и открытой транзакции
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectWriter = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Пишет все карты по возрастанию id в выходной поток
+     *
+     * @param ndjson true - по объекту на строку (application/x-ndjson), false - JSON-массив
+     */
+    public void writeAllCards(OutputStream outputStream, boolean ndjson) throws IOException {
+        long[] written = {0};
+        try (SequenceWriter writer = ndjson
+                ? objectWriter.withRootValueSeparator("\n").writeValues(outputStream)
+                : objectWriter.writeValuesAsArray(outputStream)) {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(SELECT_CARDS + " ORDER BY id", rs -> {
+                try {
+                    writer.write(CARD_ROW_MAPPER.mapRow(rs, 0));
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (ndjson && written[0] > 0) {
+            outputStream.write('\n');
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Страница карт с id больше after, по возрастанию id
+     */
+    public CardPageDTO findPage(long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<CardDTO> content = jdbcTemplate.query(SELECT_CARDS + " WHERE id > ? ORDER BY id LIMIT ?",
+                CARD_ROW_MAPPER, after, pageSize);
+        Long nextAfter = content.size() == pageSize ? content.getLast().getId() : null;
+        return new CardPageDTO(content, nextAfter);
+    }
+
+    /**
+     * Поиск карт с выдачей по ключу: WHERE (ключ, id) < (последний ключ, последний id) ORDER BY ключ, id.
+     * Глубина страницы не влияет на стоимость запроса, число карт не считается.
+     * При approximateTotal оценка числа найденных карт берётся из EXPLAIN, без выполнения запроса
+     *
+     * @param cursor курсор из nextCursor предыдущей страницы, null для первой страницы
+     */
+    public CardSearchPageDTO searchKeyset(Long userId, String status, LocalDate finalDate,
+                                          CardSortKey sortKey, boolean descending, String cursor,
+                                          int limit, boolean approximateTotal) {
+        if (userId == null && status == null && finalDate == null) {
+            throw new EntityNotFoundException("Для поиска необходимо заполнить хотя бы один из трёх параметров");
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder where = filter(userId, status, finalDate, params);
+        Long total = approximateTotal ? estimateRows(where.toString(), params) : null;
+
+        String comparison = descending ? "<" : ">";
+        String direction = descending ? " DESC" : " ASC";
+        if (cursor != null) {
+            CardSearchCursor after = CardSearchCursor.decode(cursor, sortKey, descending);
+            if (sortKey == CardSortKey.ID) {
+                where.append(" AND id ").append(comparison).append(" :lastId");
+            } else {
+                where.append(" AND (").append(sortKey.column()).append(", id) ").append(comparison)
+                        .append(" (:lastValue, :lastId)");
+                params.addValue("lastValue", after.lastValue());
+            }
+            params.addValue("lastId", after.lastId());
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        params.addValue("limit", pageSize);
+        String orderBy = sortKey == CardSortKey.ID
+                ? " ORDER BY id" + direction
+                : " ORDER BY " + sortKey.column() + direction + ", id" + direction;
+
+        List<SearchRow> rows = namedParameterJdbcTemplate.query(SELECT_CARDS + where + orderBy + " LIMIT :limit", params,
+                (rs, rowNum) -> new SearchRow(CARD_ROW_MAPPER.mapRow(rs, rowNum), sortKey.read(rs)));
+
+        String nextCursor = null;
+        if (rows.size() == pageSize) {
+            SearchRow last = rows.getLast();
+            nextCursor = new CardSearchCursor(sortKey, descending, last.sortValue(), last.card().getId()).encode();
+        }
+        return new CardSearchPageDTO(rows.stream().map(SearchRow::card).toList(), nextCursor, total);
+    }
+
+    /**
+     * Выгрузка карт с владельцами потоком по курсору PostgreSQL, в read-only транзакции без сущностей и сессии Hibernate.
+     * Фильтры те же, что у поиска, и все необязательны. Порядок строк не задан: без ORDER BY PostgreSQL отдаёт
+     * первые строки сразу, не сортируя всю таблицу
+     */
+    public void exportCards(OutputStream outputStream, ExportFormat format, boolean compress,
+                            Long userId, String status, LocalDate finalDate) throws IOException {
+        exportCards(outputStream, format, compress, prepareExport(userId, status, finalDate));
+    }
+
+    /**
+     * Проверяет фильтры выгрузки и строит её запрос. Вызывается до ответа: после начала записи
+     * статус и заголовки уже отправлены, и ошибку в фильтре клиент получил бы как обрезанный файл
+     *
+     * @throws InvalidRequestException неизвестный статус карты (ответ 400)
+     */
+    public ExportQuery prepareExport(Long userId, String status, LocalDate finalDate) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return new ExportQuery(SELECT_CARDS_WITH_OWNERS + filter(userId, status, finalDate, params), params);
+    }
+
+    /**
+     * Выгрузка по запросу из {@link #prepareExport}
+     */
+    public void exportCards(OutputStream outputStream, ExportFormat format, boolean compress,
+                            ExportQuery query) throws IOException {
+        String sql = query.sql();
+        MapSqlParameterSource params = query.params();
+        try (ExportWriter writer = new ExportWriter(outputStream, format, compress, objectWriter, EXPORT_COLUMNS)) {
+            readOnlyTransaction.executeWithoutResult(transactionStatus -> namedParameterJdbcTemplate.query(sql, params, rs -> {
+                CardExportDTO card = new CardExportDTO(
+                        rs.getLong("id"),
+                        rs.getTimestamp("final_date").toLocalDateTime().toLocalDate(),
+                        rs.getString("status"),
+                        rs.getLong("balance"),
+                        rs.getObject("user_id", Long.class),
+                        rs.getString("email"),
+                        rs.getString("first_name"),
+                        rs.getString("second_name"),
+                        rs.getString("middle_name"),
+                        rs.getString("phone_number"));
+                try {
+                    writer.write(card, card.id(), card.finalDate(), card.status(), card.balance(), card.userId(),
+                            card.email(), card.firstName(), card.secondName(), card.middleName(), card.phoneNumber());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Условия поиска по необязательным фильтрам, столбцы есть только в cards, поэтому подходят и для запроса с users
+     */
+    private StringBuilder filter(Long userId, String status, LocalDate finalDate, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder(" WHERE TRUE");
+        if (userId != null) {
+            where.append(" AND user_id = :userId");
+            params.addValue("userId", userId);
+        }
+        if (status != null) {
+            where.append(" AND status = :status");
+            params.addValue("status", parseStatus(status).name());
+        }
+        if (finalDate != null) {
+            where.append(" AND final_date = :finalDate");
+            params.addValue("finalDate", finalDate.atStartOfDay());
+        }
+        return where;
+    }
+
+    /**
+     * Оценка числа строк планировщиком PostgreSQL (Plan Rows из EXPLAIN), запрос не выполняется
+     */
+    private Long estimateRows(String where, MapSqlParameterSource params) {
+        String plan = namedParameterJdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) SELECT 1 FROM cards" + where,
+                params, String.class);
+        try {
+            JsonNode root = objectMapper.readTree(plan);
+            return root.path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось разобрать план запроса", e);
+        }
+    }
+
+    private Status parseStatus(String status) {
+        try {
+            return Status.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid card status: " + status);
+        }
+    }
+
+    private record SearchRow(CardDTO card, Object sortValue) {
+    }
+
+    /**
+     * Запрос выгрузки с проверенными фильтрами
+     */
+    public record ExportQuery(String sql, MapSqlParameterSource params) {
+    }
+}
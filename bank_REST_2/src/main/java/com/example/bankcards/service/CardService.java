@@ -2,25 +2,43 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferResultDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.exception.DifferentIdentifierException;
+import com.example.bankcards.exception.InvalidRequestException;
 import com.example.bankcards.exception.NegativeBalanceException;
 import com.example.bankcards.exception.SameCardException;
+import com.example.bankcards.exception.TransferBatchRejectedException;
 import com.example.bankcards.exception.UnactiveCardException;
 import com.example.bankcards.mapper.CardMapper;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.RetryOnConflict;
 import com.example.bankcards.util.Status;
+import com.example.bankcards.util.TransferBatchMode;
+import com.example.bankcards.util.TransferMode;
+import com.example.bankcards.util.TransferResultStatus;
 import jakarta.persistence.EntityNotFoundException;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -30,22 +48,41 @@ import java.util.Objects;
  * @see CardRepository
  * @see CardDTO
  * @see CardMapper
+ * @see TransferService
+ * @see ShardedBalanceEngine
+ * @see GroupCommitTransferPipeline
  * @see com.example.bankcards.controller.CardController
  */
 
 @Service
-@RequiredArgsConstructor
 public class CardService {
 
+    private static final int LOCK_CHUNK_SIZE = 1000;
+
     private final CardRepository cardRepository;
     private final CardMapper cardMapper;
+    private final TransferService transferService;
+    private final TransactionTemplate transferTransaction;
+    private final ObjectProvider<ShardedBalanceEngine> shardedBalanceEngine;
+    private final ObjectProvider<GroupCommitTransferPipeline> groupCommitPipeline;
 
-    @Transactional(readOnly = true)
-    public List<CardDTO> findAllCards() {
-        return cardRepository.findAll()
-                .stream()
-                .map(cardMapper::makeACardDTO)
-                .toList();
+    @Value("${transfer.mode:LOCKING}")
+    private TransferMode transferMode = TransferMode.LOCKING;
+
+    @Value("${transfer.batch.max-size:5000}")
+    private int maxBatchSize = 5000;
+
+    public CardService(CardRepository cardRepository, CardMapper cardMapper, TransferService transferService,
+                       PlatformTransactionManager transactionManager,
+                       ObjectProvider<ShardedBalanceEngine> shardedBalanceEngine,
+                       ObjectProvider<GroupCommitTransferPipeline> groupCommitPipeline) {
+        this.cardRepository = cardRepository;
+        this.cardMapper = cardMapper;
+        this.transferService = transferService;
+        this.shardedBalanceEngine = shardedBalanceEngine;
+        this.groupCommitPipeline = groupCommitPipeline;
+        this.transferTransaction = new TransactionTemplate(transactionManager);
+        this.transferTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
     }
 
     @Transactional(readOnly = true)
@@ -62,12 +99,10 @@ public class CardService {
             throw new DifferentIdentifierException("Идентификатор пользователя и владельца карты разные. В доступе отказано");
         }
 
-        return cardRepository.findAllByUserId(userId)
-                .stream()
-                .map(cardMapper::makeACardDTO)
-                .toList();
+        return cardRepository.findCardDTOsByUserId(userId);
     }
 
+    @RetryOnConflict
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public CardDTO saveCard(CardDTO cardDTO) {
 
@@ -79,25 +114,71 @@ public class CardService {
         return cardMapper.makeACardDTO(savedCard);
     }
 
+    @RetryOnConflict
     @Transactional
     public CardDTO blockCard(Long cardId) {
         Card card = cardRepository.findById(cardId).orElseThrow();
         card.setStatus(Status.BLOCKED);
+        afterCommit(() -> shardedBalanceEngine.ifAvailable(engine -> engine.updateStatus(cardId, Status.BLOCKED)));
         return cardMapper.makeACardDTO(cardRepository.save(card));
     }
 
+    @RetryOnConflict
     @Transactional
     public CardDTO activateCard(Long cardId) {
         Card card = cardRepository.findById(cardId).orElseThrow();
         card.setStatus(Status.ACTIVE);
+        afterCommit(() -> shardedBalanceEngine.ifAvailable(engine -> engine.updateStatus(cardId, Status.ACTIVE)));
         return cardMapper.makeACardDTO(cardRepository.save(card));
     }
 
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    /**
+     * Перевод между картами пользователя.
+     * В режиме LOCKING обе карты блокируются через SELECT ... FOR UPDATE в порядке возрастания id,
+     * поэтому встречные переводы ждут друг друга на блокировке строк, а не падают
+     * с ошибкой сериализации и не попадают в deadlock.
+     * В режиме CONDITIONAL перевод выполняется двумя условными UPDATE, см. {@link #transferConditional}
+     * В обоих режимах перевод записывается в журнал transfers в той же транзакции.
+     * В режиме SHARDED перевод выполняет {@link ShardedBalanceEngine}, а метод ждёт записи журнала без открытой транзакции,
+     * В режиме GROUP_COMMIT перевод ставится в очередь {@link GroupCommitTransferPipeline} и применяется вместе
+     * с другими переводами, пришедшими в то же окно, одной транзакцией.
+     * Поэтому транзакция для режимов JPA открывается явно и только на время работы с БД
+     */
+    @RetryOnConflict
     public TransactionDTO transfer(TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
 
-        Card getFromCard = cardRepository.getReferenceById(transactionDTO.fromCardId());
-        Card getToCard = cardRepository.getReferenceById(transactionDTO.toCardId());
+        if (Objects.equals(transactionDTO.fromCardId(), transactionDTO.toCardId())) {
+            throw new SameCardException("The cards for transaction are the same");
+        }
+        if (transactionDTO.amount() < 0) {
+            throw new NegativeBalanceException("Amount should be more than zero");
+        }
+
+        return switch (transferMode) {
+            case LOCKING -> transferTransaction.execute(status -> transferLocking(transactionDTO, userDetails));
+            case CONDITIONAL -> transferTransaction.execute(status -> transferConditional(transactionDTO, userDetails));
+            case SHARDED -> shardedBalanceEngine.getObject().transfer(transactionDTO, userDetails.getId());
+            case GROUP_COMMIT -> groupCommitPipeline.getObject().transfer(transactionDTO, userDetails.getId());
+        };
+    }
+
+    /**
+     * В режимах SHARDED и GROUP_COMMIT перевод фиксирует другой поток в собственной транзакции,
+     * транзакция вызывающего потока в нём не участвует
+     */
+    public boolean commitsTransfersSeparately() {
+        return transferMode == TransferMode.SHARDED || transferMode == TransferMode.GROUP_COMMIT;
+    }
+
+    /**
+     * Обе карты блокируются в порядке возрастания id, затем балансы меняются у загруженных сущностей
+     */
+    private TransactionDTO transferLocking(TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
+        Card firstLocked = lockCard(Math.min(transactionDTO.fromCardId(), transactionDTO.toCardId()));
+        Card secondLocked = lockCard(Math.max(transactionDTO.fromCardId(), transactionDTO.toCardId()));
+
+        Card getFromCard = firstLocked.getId().equals(transactionDTO.fromCardId()) ? firstLocked : secondLocked;
+        Card getToCard = getFromCard == firstLocked ? secondLocked : firstLocked;
 
         if (!getFromCard.getUser().getId().equals(userDetails.getId())) {
             throw new DifferentIdentifierException("Введен не верный идентификатор");
@@ -106,29 +187,95 @@ public class CardService {
             throw new DifferentIdentifierException("Введен не верный идентификатор");
         }
 
-        if (transactionDTO.amount() < 0) {
-            throw new NegativeBalanceException("Amount should be more than zero");
-        }
         if (getFromCard.getStatus() != Status.ACTIVE || getToCard.getStatus() != Status.ACTIVE) {
             throw new UnactiveCardException("Both cards must be active for transaction");
         }
-        if (Objects.equals(getToCard.getId(), getFromCard.getId())) {
-            throw new SameCardException("The cards for transaction are the same");
+        if (getFromCard.getBalance() < transactionDTO.amount()) {
+            throw new NegativeBalanceException("Недостаточно средств");
         }
 
+        // Карты загружены в текущую сессию, изменения балансов уйдут в БД при коммите
         getFromCard.setBalance(getFromCard.getBalance() - transactionDTO.amount());
         getToCard.setBalance(getToCard.getBalance() + transactionDTO.amount());
+        transferService.recordTransfer(transactionDTO, userDetails.getId());
+
+        return transactionDTO;
+    }
 
-        cardRepository.save(getFromCard);
+    /**
+     * Пакетный перевод между картами пользователя в одной транзакции.
+     * Все затронутые карты блокируются один раз в порядке возрастания id, переводы применяются к сущностям в памяти,
+     * а изменённые балансы записываются при коммите пакетами JDBC (hibernate.jdbc.batch_size).
+     * В режиме ALL_OR_NOTHING любая ошибка откатывает весь пакет через {@link TransferBatchRejectedException}
+     */
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<TransferResultDTO> transferBatch(List<TransactionDTO> transfers, TransferBatchMode mode,
+                                                 UserDetailsImpl userDetails) {
+        if (transferMode == TransferMode.SHARDED) {
+            throw new InvalidRequestException("Пакетные переводы недоступны в режиме SHARDED");
+        }
+        if (transfers.size() > maxBatchSize) {
+            throw new InvalidRequestException("Пакет не может содержать больше " + maxBatchSize + " переводов");
+        }
 
-        cardRepository.save(getToCard);
+        List<RuntimeException> rejections = applyTransfers(transfers, Collections.nCopies(transfers.size(), userDetails.getId()));
 
-        return transactionDTO;
+        List<TransferResultDTO> results = new ArrayList<>(transfers.size());
+        List<TransactionDTO> applied = new ArrayList<>(transfers.size());
+        boolean rejected = false;
+        for (int i = 0; i < transfers.size(); i++) {
+            TransactionDTO transfer = transfers.get(i);
+            RuntimeException rejection = rejections.get(i);
+            if (rejection == null) {
+                applied.add(transfer);
+                results.add(batchResult(i, transfer, TransferResultStatus.APPLIED, null));
+            } else {
+                rejected = true;
+                results.add(batchResult(i, transfer, TransferResultStatus.REJECTED, rejection.getMessage()));
+            }
+        }
+
+        if (rejected && mode == TransferBatchMode.ALL_OR_NOTHING) {
+            throw new TransferBatchRejectedException("Пакет переводов отклонён", results.stream()
+                    .map(result -> result.status() == TransferResultStatus.APPLIED
+                            ? result.withStatus(TransferResultStatus.ROLLED_BACK)
+                            : result)
+                    .toList());
+        }
+        transferService.recordTransfers(applied, userDetails.getId());
+        return results;
+    }
+
+    /**
+     * Применяет группу переводов разных пользователей одной транзакцией, см. {@link GroupCommitTransferPipeline}.
+     * Карты блокируются один раз в порядке возрастания id, переводы применяются по очереди,
+     * отклонённый перевод не мешает остальным.
+     *
+     * @return для каждого перевода исключение, с которым он отклонён, или null, если перевод применён
+     */
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<RuntimeException> applyTransferGroup(List<TransactionDTO> transfers, List<Long> userIds) {
+        List<RuntimeException> rejections = applyTransfers(transfers, userIds);
+
+        List<TransactionDTO> applied = new ArrayList<>(transfers.size());
+        List<Long> appliedUserIds = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            if (rejections.get(i) == null) {
+                applied.add(transfers.get(i));
+                appliedUserIds.add(userIds.get(i));
+            }
+        }
+        transferService.recordTransfers(applied, appliedUserIds);
+        return rejections;
     }
 
+    @RetryOnConflict
     @Transactional
     public void deleteCard(Long id) {
         cardRepository.deleteById(id);
+        afterCommit(() -> shardedBalanceEngine.ifAvailable(engine -> engine.evict(id)));
     }
 
     @Transactional
@@ -150,4 +297,148 @@ public class CardService {
 
         return cardRepository.findAll(spec, pageable).map(cardMapper::makeACardDTO);
     }
+
+    /**
+     * Списание и зачисление выполняются отдельными UPDATE с условиями в WHERE,
+     * успех определяется числом изменённых строк. Сущности не загружаются.
+     * Строки изменяются в порядке возрастания id, как и в режиме LOCKING, чтобы встречные переводы не ждали друг друга по кругу.
+     * При отказе карта читается повторно только для того, чтобы вернуть понятную ошибку.
+     */
+    private TransactionDTO transferConditional(TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
+        if (transactionDTO.fromCardId() < transactionDTO.toCardId()) {
+            debit(transactionDTO, userDetails);
+            credit(transactionDTO, userDetails);
+        } else {
+            credit(transactionDTO, userDetails);
+            debit(transactionDTO, userDetails);
+        }
+        transferService.recordTransfer(transactionDTO, userDetails.getId());
+        return transactionDTO;
+    }
+
+    private void debit(TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
+        int updated = cardRepository.debit(transactionDTO.fromCardId(), userDetails.getId(), transactionDTO.amount());
+        if (updated == 0) {
+            throw rejection(transactionDTO.fromCardId(), userDetails,
+                    new NegativeBalanceException("Недостаточно средств"));
+        }
+    }
+
+    private void credit(TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
+        int updated = cardRepository.credit(transactionDTO.toCardId(), userDetails.getId(), transactionDTO.amount());
+        if (updated == 0) {
+            throw rejection(transactionDTO.toCardId(), userDetails,
+                    new UnactiveCardException("Both cards must be active for transaction"));
+        }
+    }
+
+    private RuntimeException rejection(Long cardId, UserDetailsImpl userDetails, RuntimeException fallback) {
+        Card card = cardRepository.findById(cardId).orElse(null);
+        if (card == null) {
+            return new EntityNotFoundException("Указанная карта не найдена");
+        }
+        if (!card.getUser().getId().equals(userDetails.getId())) {
+            return new DifferentIdentifierException("Введен не верный идентификатор");
+        }
+        if (card.getStatus() != Status.ACTIVE) {
+            return new UnactiveCardException("Both cards must be active for transaction");
+        }
+        return fallback;
+    }
+
+    private Map<Long, Card> lockCards(Collection<Long> cardIds) {
+        List<Long> sortedIds = cardIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .toList();
+
+        Map<Long, Card> cards = new HashMap<>();
+        for (int from = 0; from < sortedIds.size(); from += LOCK_CHUNK_SIZE) {
+            List<Long> chunk = sortedIds.subList(from, Math.min(from + LOCK_CHUNK_SIZE, sortedIds.size()));
+            cardRepository.findAllByIdInForUpdate(chunk).forEach(card -> cards.put(card.getId(), card));
+        }
+        return cards;
+    }
+
+    /**
+     * Блокирует все затронутые карты и применяет к ним переводы в памяти по порядку
+     *
+     * @return для каждого перевода исключение отказа или null
+     */
+    private List<RuntimeException> applyTransfers(List<TransactionDTO> transfers, List<Long> userIds) {
+        List<Long> cardIds = new ArrayList<>();
+        for (TransactionDTO transfer : transfers) {
+            cardIds.add(transfer.fromCardId());
+            cardIds.add(transfer.toCardId());
+        }
+        Map<Long, Card> cards = lockCards(cardIds);
+
+        List<RuntimeException> rejections = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransactionDTO transfer = transfers.get(i);
+            RuntimeException rejection = checkTransfer(transfer, cards, userIds.get(i));
+            if (rejection == null) {
+                Card fromCard = cards.get(transfer.fromCardId());
+                Card toCard = cards.get(transfer.toCardId());
+                fromCard.setBalance(fromCard.getBalance() - transfer.amount());
+                toCard.setBalance(toCard.getBalance() + transfer.amount());
+            }
+            rejections.add(rejection);
+        }
+        return rejections;
+    }
+
+    private RuntimeException checkTransfer(TransactionDTO transfer, Map<Long, Card> cards, Long userId) {
+        if (transfer.fromCardId() == null || transfer.toCardId() == null || transfer.amount() == null) {
+            return new InvalidRequestException("Не заполнены обязательные поля перевода");
+        }
+        if (transfer.amount() < 0) {
+            return new NegativeBalanceException("Amount should be more than zero");
+        }
+        if (Objects.equals(transfer.fromCardId(), transfer.toCardId())) {
+            return new SameCardException("The cards for transaction are the same");
+        }
+
+        Card fromCard = cards.get(transfer.fromCardId());
+        Card toCard = cards.get(transfer.toCardId());
+        if (fromCard == null || toCard == null) {
+            return new EntityNotFoundException("Указанная карта не найдена");
+        }
+        if (!fromCard.getUser().getId().equals(userId) || !toCard.getUser().getId().equals(userId)) {
+            return new DifferentIdentifierException("Введен не верный идентификатор");
+        }
+        if (fromCard.getStatus() != Status.ACTIVE || toCard.getStatus() != Status.ACTIVE) {
+            return new UnactiveCardException("Both cards must be active for transaction");
+        }
+        if (fromCard.getBalance() < transfer.amount()) {
+            return new NegativeBalanceException("Недостаточно средств");
+        }
+        return null;
+    }
+
+    private TransferResultDTO batchResult(int index, TransactionDTO transfer, TransferResultStatus status, String message) {
+        return new TransferResultDTO(index, transfer.fromCardId(), transfer.toCardId(), transfer.amount(), status, message);
+    }
+
+    /**
+     * Изменения статуса и удаление карты передаются движку SHARDED только после коммита
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private Card lockCard(Long cardId) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new EntityNotFoundException("Указанная карта не найдена"));
+    }
 }
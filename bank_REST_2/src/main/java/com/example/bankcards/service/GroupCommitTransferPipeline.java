@@ -0,0 +1,159 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Групповая фиксация переводов для режима transfer.mode=GROUP_COMMIT.
+ * Запросы складываются в очередь, один поток собирает из неё группу: до batch-size переводов
+ * или всё, что пришло за window после первого перевода группы. Группа применяется
+ * {@link CardService#applyTransferGroup} одной транзакцией с одной блокировкой карт и одним коммитом,
+ * затем каждый ожидающий запрос получает свой результат. Пока группа фиксируется, копится следующая.
+ * Метрики: transfer.group.fill.ratio - заполненность группы относительно batch-size,
+ * transfer.group.window.latency - сколько перевод ждал в очереди до начала применения группы
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfer.mode", havingValue = "GROUP_COMMIT")
+public class GroupCommitTransferPipeline implements DisposableBean {
+
+    private final CardService cardService;
+    private final LinkedBlockingQueue<PendingTransfer> queue = new LinkedBlockingQueue<>();
+    private final long windowNanos;
+    private final int batchSize;
+    private final long timeoutMs;
+    private final DistributionSummary fillRatio;
+    private final Timer windowLatency;
+    private final Thread collector;
+    private volatile boolean running = true;
+
+    public GroupCommitTransferPipeline(CardService cardService,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${transfer.group-commit.window:2ms}") Duration window,
+                                       @Value("${transfer.group-commit.batch-size:256}") int batchSize,
+                                       @Value("${transfer.group-commit.timeout-ms:5000}") long timeoutMs) {
+        this.cardService = cardService;
+        this.windowNanos = window.toNanos();
+        this.batchSize = batchSize;
+        this.timeoutMs = timeoutMs;
+        this.fillRatio = DistributionSummary.builder("transfer.group.fill.ratio")
+                .description("Заполненность группы переводов относительно batch-size")
+                .register(meterRegistry);
+        this.windowLatency = Timer.builder("transfer.group.window.latency")
+                .description("Ожидание перевода в очереди до применения группы")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        this.collector = new Thread(this::collect, "transfer-group-commit");
+        this.collector.start();
+    }
+
+    /**
+     * Ставит перевод в очередь и ждёт фиксации группы, в которую он попал
+     */
+    public TransactionDTO transfer(TransactionDTO transactionDTO, Long userId) {
+        PendingTransfer pending = new PendingTransfer(transactionDTO, userId, System.nanoTime(), new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            return pending.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Перевод не подтверждён вовремя, результат станет известен после фиксации группы");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание перевода прервано");
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        collector.interrupt();
+        collector.join(timeoutMs);
+        List<PendingTransfer> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.result().completeExceptionally(
+                new IllegalStateException("Приложение останавливается, перевод не выполнен")));
+    }
+
+    private void collect() {
+        while (running) {
+            try {
+                List<PendingTransfer> group = nextGroup();
+                if (!group.isEmpty()) {
+                    apply(group);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<PendingTransfer> nextGroup() throws InterruptedException {
+        List<PendingTransfer> group = new ArrayList<>(batchSize);
+        PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return group;
+        }
+        group.add(first);
+
+        long deadline = System.nanoTime() + windowNanos;
+        while (group.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingTransfer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+        }
+        return group;
+    }
+
+    private void apply(List<PendingTransfer> group) {
+        long startedAt = System.nanoTime();
+        fillRatio.record((double) group.size() / batchSize);
+        group.forEach(pending -> windowLatency.record(startedAt - pending.enqueuedAt(), TimeUnit.NANOSECONDS));
+
+        List<TransactionDTO> transfers = group.stream().map(PendingTransfer::transfer).toList();
+        List<Long> userIds = group.stream().map(PendingTransfer::userId).toList();
+        try {
+            List<RuntimeException> rejections = cardService.applyTransferGroup(transfers, userIds);
+            for (int i = 0; i < group.size(); i++) {
+                PendingTransfer pending = group.get(i);
+                if (rejections.get(i) == null) {
+                    pending.result().complete(pending.transfer());
+                } else {
+                    pending.result().completeExceptionally(rejections.get(i));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Группа из {} переводов не зафиксирована", group.size(), e);
+            group.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private record PendingTransfer(TransactionDTO transfer, Long userId, long enqueuedAt,
+                                   CompletableFuture<TransactionDTO> result) {
+    }
+}
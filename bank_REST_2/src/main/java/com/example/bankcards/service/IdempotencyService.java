@@ -0,0 +1,266 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.exception.DifferentIdentifierException;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.exception.InvalidRequestException;
+import com.example.bankcards.exception.NegativeBalanceException;
+import com.example.bankcards.exception.SameCardException;
+import com.example.bankcards.exception.UnactiveCardException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.util.RetryOnConflict;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+
+/**
+ * Класс сервис отвечающий за идемпотентность переводов по заголовку Idempotency-Key.
+ * Первый успешный результат сохраняется в таблицу idempotency_keys в транзакции перевода,
+ * перед таблицей стоит ограниченный LRU-кэш, он проверяется до открытия транзакции,
+ * поэтому частые повторы не доходят до PostgreSQL и не занимают подключение из пула.
+ * Повтор с тем же ключом и телом возвращает сохранённый результат, с другим телом - ошибку 409.
+ * Неуспешные переводы не сохраняются: транзакция откатывается вместе с ключом, деньги не списаны.
+ * В режимах SHARDED и GROUP_COMMIT ключ, перевод и результат фиксируются по отдельности.
+ *
+ * @see IdempotencyKey
+ * @see IdempotencyKeyRepository
+ * @see CardService
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final CardService cardService;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final int purgeBatchSize;
+    private final Cache<IdempotencyKey.PrimaryKey, StoredResponse> cache;
+    private final TransactionTemplate transaction;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              CardService cardService,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.ttl:24h}") Duration ttl,
+                              @Value("${idempotency.cache-size:10000}") long cacheSize,
+                              @Value("${idempotency.purge-batch-size:1000}") int purgeBatchSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.cardService = cardService;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.purgeBatchSize = purgeBatchSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * Кэш проверяется до открытия транзакции: частый повтор не берёт подключение из пула.
+     * При промахе ключ занимается, перевод выполняется и результат сохраняется одной транзакцией READ COMMITTED.
+     * В режимах SHARDED и GROUP_COMMIT перевод фиксирует другой поток своим подключением, поэтому держать
+     * транзакцию ключа открытой на время ожидания нельзя, см. {@link #transferSeparately}
+     */
+    @RetryOnConflict
+    public TransactionDTO transfer(String key, TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
+        if (key.isBlank() || key.length() > 255) {
+            throw new InvalidRequestException("Idempotency-Key должен содержать от 1 до 255 символов");
+        }
+
+        IdempotencyKey.PrimaryKey id = new IdempotencyKey.PrimaryKey(userDetails.getId(), key);
+        String requestHash = hash(transactionDTO);
+        LocalDateTime now = now();
+
+        StoredResponse cached = cache.getIfPresent(id);
+        if (cached != null && cached.expiresAt().isAfter(now)) {
+            return replay(cached, requestHash);
+        }
+
+        if (cardService.commitsTransfersSeparately()) {
+            return transferSeparately(id, requestHash, now, transactionDTO, userDetails);
+        }
+        return transaction.execute(status -> claimAndTransfer(id, requestHash, now, transactionDTO, userDetails));
+    }
+
+    /**
+     * Удаляет просроченные ключи пакетами, каждый пакет в своей короткой транзакции
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        LocalDateTime now = now();
+        int total = 0;
+        int deleted;
+        do {
+            deleted = idempotencyKeyRepository.deleteExpired(now, purgeBatchSize);
+            total += deleted;
+        } while (deleted == purgeBatchSize);
+
+        if (total > 0) {
+            log.info("Удалено просроченных ключей идемпотентности: {}", total);
+        }
+    }
+
+    private TransactionDTO claimAndTransfer(IdempotencyKey.PrimaryKey id, String requestHash, LocalDateTime now,
+                                            TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
+        TransactionDTO stored = claim(id, requestHash, now);
+        if (stored != null) {
+            return stored;
+        }
+
+        TransactionDTO response = cardService.transfer(transactionDTO, userDetails);
+        idempotencyKeyRepository.complete(id.getUserId(), id.getKey(), write(response));
+
+        StoredResponse storedResponse = new StoredResponse(requestHash, response, now.plus(ttl));
+        afterCommit(() -> cache.put(id, storedResponse));
+        return response;
+    }
+
+    /**
+     * Ключ занимается отдельной короткой транзакцией и фиксируется до перевода, перевод выполняется без транзакции,
+     * результат сохраняется второй транзакцией. Повтор во время перевода получает 409.
+     * Если перевод отклонён проверками, деньги не списаны и ключ освобождается для повтора.
+     * Если исход перевода неизвестен (истекло ожидание, ошибка записи журнала) или не удалось сохранить результат,
+     * ключ остаётся занятым до истечения ttl: повтор не должен перевести деньги второй раз
+     */
+    private TransactionDTO transferSeparately(IdempotencyKey.PrimaryKey id, String requestHash, LocalDateTime now,
+                                              TransactionDTO transactionDTO, UserDetailsImpl userDetails) {
+        TransactionDTO stored = transaction.execute(status -> claim(id, requestHash, now));
+        if (stored != null) {
+            return stored;
+        }
+
+        TransactionDTO response;
+        try {
+            response = cardService.transfer(transactionDTO, userDetails);
+        } catch (RuntimeException e) {
+            if (isRejection(e)) {
+                transaction.executeWithoutResult(status -> idempotencyKeyRepository.release(id.getUserId(), id.getKey()));
+            } else {
+                log.warn("Исход перевода по Idempotency-Key неизвестен, ключ остаётся занятым: {}", e.getMessage());
+            }
+            throw e;
+        }
+
+        StoredResponse storedResponse = new StoredResponse(requestHash, response, now.plus(ttl));
+        cache.put(id, storedResponse);
+        try {
+            transaction.executeWithoutResult(status ->
+                    idempotencyKeyRepository.complete(id.getUserId(), id.getKey(), write(response)));
+        } catch (RuntimeException e) {
+            log.error("Перевод выполнен, но результат по Idempotency-Key не сохранён, ключ остаётся занятым", e);
+        }
+        return response;
+    }
+
+    /**
+     * Занимает ключ
+     *
+     * @return null если ключ занят этим запросом, иначе сохранённый результат первого запроса
+     */
+    private TransactionDTO claim(IdempotencyKey.PrimaryKey id, String requestHash, LocalDateTime now) {
+        int claimed = idempotencyKeyRepository.claim(id.getUserId(), id.getKey(), requestHash, now, now.plus(ttl));
+        if (claimed == 1) {
+            return null;
+        }
+        IdempotencyKey stored = idempotencyKeyRepository.findById(id)
+                .orElseThrow(() -> new IdempotencyKeyConflictException("Запрос с этим Idempotency-Key ещё выполняется"));
+        if (!stored.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key уже использован для другого запроса");
+        }
+        StoredResponse storedResponse = new StoredResponse(stored.getRequestHash(),
+                read(stored.getResponseBody()), stored.getExpiresAt());
+        cache.put(id, storedResponse);
+        return storedResponse.response();
+    }
+
+    /**
+     * Отказ проверок перевода: перевод точно не выполнен
+     */
+    private static boolean isRejection(RuntimeException e) {
+        return e instanceof NegativeBalanceException
+                || e instanceof SameCardException
+                || e instanceof UnactiveCardException
+                || e instanceof DifferentIdentifierException
+                || e instanceof EntityNotFoundException
+                || e instanceof InvalidRequestException;
+    }
+
+    private TransactionDTO replay(StoredResponse storedResponse, String requestHash) {
+        if (!storedResponse.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key уже использован для другого запроса");
+        }
+        return storedResponse.response();
+    }
+
+    private String hash(TransactionDTO transactionDTO) {
+        String canonical = transactionDTO.fromCardId() + "|" + transactionDTO.toCardId() + "|" + transactionDTO.amount();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String write(TransactionDTO response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить результат перевода", e);
+        }
+    }
+
+    private TransactionDTO read(String responseBody) {
+        if (responseBody == null) {
+            throw new IdempotencyKeyConflictException("Запрос с этим Idempotency-Key ещё выполняется");
+        }
+        try {
+            return objectMapper.readValue(responseBody, TransactionDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать сохранённый результат перевода", e);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private record StoredResponse(String requestHash, TransactionDTO response, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,501 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ImportJobDTO;
+import com.example.bankcards.dto.ImportRejectedRowDTO;
+import com.example.bankcards.entity.ImportJob;
+import com.example.bankcards.repository.ImportJobRepository;
+import com.example.bankcards.util.CsvFormat;
+import com.example.bankcards.util.ImportJobStatus;
+import com.example.bankcards.util.ImportKind;
+import com.example.bankcards.util.RoleEnum;
+import com.example.bankcards.util.Status;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Класс сервис для импорта пользователей и карт из CSV при переносе данных из старой системы.
+ * Файл сохраняется во временный файл, запрос сразу получает задание, а загрузка идёт в фоне (задания по очереди).
+ * Файл читается частями по imports.chunk-size строк. Строки части проверяются параллельно
+ * (пароли в открытом виде хешируются BCrypt там же, готовые хеши BCrypt сохраняются как есть),
+ * затем одной транзакцией: принятые строки загружаются COPY в UNLOGGED таблицу import_user_rows / import_card_rows,
+ * сливаются в users / cards несколькими INSERT ... SELECT, промежуточные строки удаляются и обновляется прогресс.
+ * Поэтому прогресс и отклонённые строки видны, пока задание ещё идёт.
+ * Email и телефон пользователей уникальны: повтор внутри файла или совпадение с существующим пользователем
+ * отклоняет строку, гонку с параллельной регистрацией разрешает ON CONFLICT по ограничениям таблицы users.
+ * Владелец карты ищется по email.
+ * Задание выполняется на узле, принявшем файл, и не переживает его перезапуск: при старте задания
+ * в статусах QUEUED и RUNNING, созданные до старта, помечаются FAILED
+ *
+ * @see com.example.bankcards.controller.ImportController
+ */
+@Slf4j
+@Service
+public class ImportService implements DisposableBean {
+
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    private static final Pattern PHONE = Pattern.compile("^\\+?\\d{10,15}$");
+    private static final Pattern BCRYPT = Pattern.compile("^\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}$");
+    private static final int MAX_LENGTH = 255;
+    private static final int MAX_REJECTED_PAGE = 1000;
+
+    private static final String COPY_USERS_SQL = "COPY import_user_rows (job_id, line_no, first_name, second_name, "
+            + "middle_name, email, phone_number, password, raw_line) FROM STDIN (FORMAT csv)";
+
+    private static final String COPY_CARDS_SQL = "COPY import_card_rows (job_id, line_no, user_email, final_date, "
+            + "balance, status, raw_line) FROM STDIN (FORMAT csv)";
+
+    private static final String REJECT_SQL =
+            "INSERT INTO import_rejected_rows (job_id, line_no, reason, raw_line) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Отклоняет повторы email и телефона внутри части (побеждает первая строка) и совпадения с пользователями в БД.
+     * Повторы из предыдущих частей уже в users
+     */
+    private static final String REJECT_DUPLICATE_USERS_SQL = """
+            INSERT INTO import_rejected_rows (job_id, line_no, reason, raw_line)
+            SELECT s.job_id, s.line_no,
+                   CASE WHEN s.email_rank > 1 OR EXISTS (SELECT 1 FROM users u WHERE u.email = s.email)
+                        THEN 'Email уже занят' ELSE 'Телефон уже занят' END,
+                   s.raw_line
+            FROM (SELECT r.*,
+                         row_number() OVER (PARTITION BY r.email ORDER BY r.line_no) AS email_rank,
+                         row_number() OVER (PARTITION BY r.phone_number ORDER BY r.line_no) AS phone_rank
+                  FROM import_user_rows r
+                  WHERE r.job_id = ?) s
+            WHERE s.email_rank > 1
+               OR s.phone_rank > 1
+               OR EXISTS (SELECT 1 FROM users u WHERE u.email = s.email)
+               OR EXISTS (SELECT 1 FROM users u WHERE u.phone_number = s.phone_number)
+            """;
+
+    /**
+     * Вставляет оставшихся пользователей с ролью ROLE_USER. Строки, которые ON CONFLICT пропустил
+     * из-за параллельной регистрации, отклоняются тем же запросом, он возвращает их число
+     */
+    private static final String MERGE_USERS_SQL = """
+            WITH inserted AS (
+                INSERT INTO users (first_name, second_name, middle_name, email, phone_number, password)
+                SELECT s.first_name, s.second_name, s.middle_name, s.email, s.phone_number, s.password
+                FROM import_user_rows s
+                WHERE s.job_id = ?
+                  AND NOT EXISTS (SELECT 1 FROM import_rejected_rows r WHERE r.job_id = s.job_id AND r.line_no = s.line_no)
+                ORDER BY s.line_no
+                ON CONFLICT DO NOTHING
+                RETURNING id, email
+            ), granted AS (
+                INSERT INTO user_roles (user_id, role_id)
+                SELECT id, ? FROM inserted
+            )
+            INSERT INTO import_rejected_rows (job_id, line_no, reason, raw_line)
+            SELECT s.job_id, s.line_no, 'Email или телефон заняты другим пользователем', s.raw_line
+            FROM import_user_rows s
+            WHERE s.job_id = ?
+              AND NOT EXISTS (SELECT 1 FROM import_rejected_rows r WHERE r.job_id = s.job_id AND r.line_no = s.line_no)
+              AND NOT EXISTS (SELECT 1 FROM inserted i WHERE i.email = s.email)
+            """;
+
+    private static final String REJECT_CARDS_WITHOUT_OWNER_SQL = """
+            INSERT INTO import_rejected_rows (job_id, line_no, reason, raw_line)
+            SELECT s.job_id, s.line_no, 'Владелец карты не найден', s.raw_line
+            FROM import_card_rows s
+            WHERE s.job_id = ?
+              AND NOT EXISTS (SELECT 1 FROM users u WHERE u.email = s.user_email)
+            """;
+
+    private static final String MERGE_CARDS_SQL = """
+            INSERT INTO cards (final_date, status, balance, user_id)
+            SELECT s.final_date, s.status, s.balance, u.id
+            FROM import_card_rows s
+            JOIN users u ON u.email = s.user_email
+            WHERE s.job_id = ?
+            ORDER BY s.line_no
+            """;
+
+    private static final String PROGRESS_SQL = "UPDATE import_jobs SET rows_read = rows_read + ?, "
+            + "rows_imported = rows_imported + ?, rows_rejected = rows_rejected + ? WHERE id = ?";
+
+    private final ImportJobRepository importJobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final RoleRegistry roleRegistry;
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final ExecutorService jobs;
+    private final ExecutorService validators;
+    private final int validationThreads;
+    private final int chunkSize;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    public ImportService(ImportJobRepository importJobRepository,
+                         JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         RoleRegistry roleRegistry,
+                         @Value("${imports.chunk-size:10000}") int chunkSize,
+                         @Value("${imports.validation-threads:0}") int validationThreads,
+                         @Value("${imports.password-strength:10}") int passwordStrength) {
+        this.importJobRepository = importJobRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.roleRegistry = roleRegistry;
+        // Стоимость ниже рабочей ускоряет импорт, при первом входе пароль перехешируется с текущей стоимостью
+        this.passwordEncoder = new BCryptPasswordEncoder(passwordStrength);
+        this.chunkSize = chunkSize;
+        this.validationThreads = validationThreads > 0 ? validationThreads : Runtime.getRuntime().availableProcessors();
+
+        this.jobs = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "import-job"));
+        AtomicInteger validatorNumber = new AtomicInteger();
+        this.validators = Executors.newFixedThreadPool(this.validationThreads,
+                runnable -> new Thread(runnable, "import-validator-" + validatorNumber.incrementAndGet()));
+    }
+
+    /**
+     * Принимает файл и ставит задание в очередь. Тело запроса целиком сохраняется во временный файл,
+     * чтобы загрузка не зависела от соединения клиента
+     */
+    public ImportJobDTO submit(ImportKind kind, InputStream body) throws IOException {
+        Path file = Files.createTempFile("import-" + kind.name().toLowerCase(Locale.ROOT) + "-", ".csv");
+        try {
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        ImportJob job = new ImportJob();
+        job.setKind(kind);
+        job.setStatus(ImportJobStatus.QUEUED);
+        job.setCreatedAt(LocalDateTime.now());
+        ImportJob saved = importJobRepository.save(job);
+
+        jobs.execute(() -> run(saved.getId(), kind, file));
+        return toDTO(saved);
+    }
+
+    public ImportJobDTO findJob(Long id) {
+        return toDTO(importJobRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Задание импорта не найдено")));
+    }
+
+    /**
+     * Отклонённые строки задания по возрастанию номера строки, следующая страница - с afterLine последней строки
+     */
+    public List<ImportRejectedRowDTO> findRejectedRows(Long jobId, long afterLine, int limit) {
+        if (!importJobRepository.existsById(jobId)) {
+            throw new EntityNotFoundException("Задание импорта не найдено");
+        }
+        return jdbcTemplate.query("SELECT line_no, reason, raw_line FROM import_rejected_rows "
+                        + "WHERE job_id = ? AND line_no > ? ORDER BY line_no LIMIT ?",
+                (rs, rowNum) -> new ImportRejectedRowDTO(rs.getLong("line_no"), rs.getString("reason"),
+                        rs.getString("raw_line")),
+                jobId, afterLine, Math.clamp(limit, 1, MAX_REJECTED_PAGE));
+    }
+
+    /**
+     * Помечает FAILED задания, прерванные остановкой приложения: их временные файлы уже недоступны
+     *
+     * @return число помеченных заданий
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public int failInterruptedJobs() {
+        int failed = jdbcTemplate.update("UPDATE import_jobs SET status = ?, error = ?, finished_at = ? "
+                        + "WHERE status IN (?, ?) AND created_at < ?",
+                ImportJobStatus.FAILED.name(), "Импорт прерван перезапуском приложения", LocalDateTime.now(),
+                ImportJobStatus.QUEUED.name(), ImportJobStatus.RUNNING.name(), startedAt);
+        if (failed > 0) {
+            log.warn("Помечено FAILED прерванных заданий импорта: {}", failed);
+        }
+        return failed;
+    }
+
+    @Override
+    public void destroy() {
+        jobs.shutdownNow();
+        validators.shutdownNow();
+    }
+
+    private void run(long jobId, ImportKind kind, Path file) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            jdbcTemplate.update("UPDATE import_jobs SET status = ?, started_at = ? WHERE id = ?",
+                    ImportJobStatus.RUNNING.name(), LocalDateTime.now(), jobId);
+            checkHeader(kind, reader.readLine());
+
+            List<Line> chunk = new ArrayList<>(chunkSize);
+            long lineNo = 1;
+            String raw;
+            while ((raw = reader.readLine()) != null) {
+                lineNo++;
+                if (raw.isBlank()) {
+                    continue;
+                }
+                chunk.add(new Line(lineNo, raw));
+                if (chunk.size() == chunkSize) {
+                    load(jobId, kind, validateAll(kind, chunk));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                load(jobId, kind, validateAll(kind, chunk));
+            }
+            finish(jobId, ImportJobStatus.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(jobId, ImportJobStatus.FAILED, "Импорт прерван остановкой приложения");
+        } catch (Exception e) {
+            log.error("Импорт {} остановлен ошибкой", jobId, e);
+            finish(jobId, ImportJobStatus.FAILED, NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить файл импорта {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void finish(long jobId, ImportJobStatus status, String error) {
+        try {
+            jdbcTemplate.update("UPDATE import_jobs SET status = ?, error = ?, finished_at = ? WHERE id = ?",
+                    status.name(), error, LocalDateTime.now(), jobId);
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать итог импорта {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    private void checkHeader(ImportKind kind, String header) {
+        List<String> expected = Arrays.asList(kind.getColumns());
+        List<String> actual = header == null ? List.of() : CsvFormat.parse(header.replace("\uFEFF", "")).stream()
+                .map(column -> column.strip().toLowerCase(Locale.ROOT))
+                .toList();
+        if (!actual.equals(expected)) {
+            throw new IllegalArgumentException("Первая строка файла должна быть заголовком: " + String.join(",", expected));
+        }
+    }
+
+    /**
+     * Проверяет строки части на validationThreads потоках, порядок строк сохраняется
+     */
+    private List<Checked> validateAll(ImportKind kind, List<Line> lines) throws InterruptedException, ExecutionException {
+        int slice = (lines.size() + validationThreads - 1) / validationThreads;
+        List<Future<List<Checked>>> parts = new ArrayList<>();
+        for (int from = 0; from < lines.size(); from += slice) {
+            List<Line> part = lines.subList(from, Math.min(lines.size(), from + slice));
+            parts.add(validators.submit(() -> part.stream().map(line -> validate(kind, line)).toList()));
+        }
+
+        List<Checked> checked = new ArrayList<>(lines.size());
+        for (Future<List<Checked>> part : parts) {
+            checked.addAll(part.get());
+        }
+        return checked;
+    }
+
+    /**
+     * Загружает проверенную часть одной транзакцией: COPY в промежуточную таблицу, слияние, прогресс задания
+     */
+    private void load(long jobId, ImportKind kind, List<Checked> rows) {
+        transaction.executeWithoutResult(status -> {
+            StringBuilder staged = new StringBuilder();
+            int stagedRows = 0;
+            List<Object[]> rejected = new ArrayList<>();
+            for (Checked row : rows) {
+                if (row.reason() == null) {
+                    Object[] values = new Object[row.values().length + 3];
+                    values[0] = jobId;
+                    values[1] = row.lineNo();
+                    System.arraycopy(row.values(), 0, values, 2, row.values().length);
+                    values[values.length - 1] = row.shownLine();
+                    CsvFormat.append(staged, values);
+                    stagedRows++;
+                } else {
+                    rejected.add(new Object[]{jobId, row.lineNo(), row.reason(), row.shownLine()});
+                }
+            }
+            if (!rejected.isEmpty()) {
+                jdbcTemplate.batchUpdate(REJECT_SQL, rejected);
+            }
+
+            long imported = 0;
+            long mergeRejected = 0;
+            if (stagedRows > 0) {
+                if (kind == ImportKind.USERS) {
+                    copyIn(COPY_USERS_SQL, staged.toString());
+                    mergeRejected += jdbcTemplate.update(REJECT_DUPLICATE_USERS_SQL, jobId);
+                    mergeRejected += jdbcTemplate.update(MERGE_USERS_SQL, jobId,
+                            roleRegistry.get(RoleEnum.ROLE_USER).getId(), jobId);
+                    imported = stagedRows - mergeRejected;
+                    jdbcTemplate.update("DELETE FROM import_user_rows WHERE job_id = ?", jobId);
+                } else {
+                    copyIn(COPY_CARDS_SQL, staged.toString());
+                    mergeRejected += jdbcTemplate.update(REJECT_CARDS_WITHOUT_OWNER_SQL, jobId);
+                    imported = jdbcTemplate.update(MERGE_CARDS_SQL, jobId);
+                    jdbcTemplate.update("DELETE FROM import_card_rows WHERE job_id = ?", jobId);
+                }
+            }
+            jdbcTemplate.update(PROGRESS_SQL, rows.size(), imported, rejected.size() + mergeRejected, jobId);
+        });
+    }
+
+    private void copyIn(String sql, String csv) {
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(csv));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Checked validate(ImportKind kind, Line line) {
+        List<String> fields;
+        try {
+            fields = CsvFormat.parse(line.raw());
+        } catch (IllegalArgumentException e) {
+            return Checked.rejected(line.lineNo(), "Некорректная строка CSV: " + e.getMessage(), null);
+        }
+        if (fields.size() != kind.getColumns().length) {
+            return Checked.rejected(line.lineNo(), "Ожидается столбцов: " + kind.getColumns().length
+                    + ", в строке: " + fields.size(), kind == ImportKind.USERS ? null : line.raw());
+        }
+        return kind == ImportKind.USERS ? validateUser(line.lineNo(), fields) : validateCard(line, fields);
+    }
+
+    /**
+     * Пароль не попадает ни в промежуточную таблицу, ни в отклонённые строки: вместо строки файла хранится её копия без пароля
+     */
+    private Checked validateUser(long lineNo, List<String> fields) {
+        String firstName = fields.get(0).strip();
+        String secondName = fields.get(1).strip();
+        String middleName = fields.get(2).strip();
+        String email = fields.get(3).strip();
+        String phoneNumber = fields.get(4).strip();
+        String password = fields.get(5);
+
+        StringBuilder shown = new StringBuilder();
+        CsvFormat.append(shown, firstName, secondName, middleName, email, phoneNumber, "***");
+        String shownLine = shown.substring(0, shown.length() - 1);
+
+        if (firstName.isEmpty() || secondName.isEmpty() || middleName.isEmpty()) {
+            return Checked.rejected(lineNo, "Не указаны имя, фамилия или отчество", shownLine);
+        }
+        if (tooLong(firstName, secondName, middleName, email, phoneNumber)) {
+            return Checked.rejected(lineNo, "Значение длиннее " + MAX_LENGTH + " символов", shownLine);
+        }
+        if (!EMAIL.matcher(email).matches()) {
+            return Checked.rejected(lineNo, "Некорректный email", shownLine);
+        }
+        if (!PHONE.matcher(phoneNumber).matches()) {
+            return Checked.rejected(lineNo, "Некорректный номер телефона", shownLine);
+        }
+
+        String passwordHash;
+        if (BCRYPT.matcher(password).matches()) {
+            passwordHash = password;
+        } else if (password.length() < 6) {
+            return Checked.rejected(lineNo, "Пароль короче 6 символов", shownLine);
+        } else {
+            passwordHash = passwordEncoder.encode(password);
+        }
+
+        return Checked.accepted(lineNo, shownLine,
+                firstName, secondName, middleName, email, phoneNumber, passwordHash);
+    }
+
+    private Checked validateCard(Line line, List<String> fields) {
+        String email = fields.get(0).strip();
+        String finalDate = fields.get(1).strip();
+        String balance = fields.get(2).strip();
+        String status = fields.get(3).strip();
+
+        if (email.length() > MAX_LENGTH || !EMAIL.matcher(email).matches()) {
+            return Checked.rejected(line.lineNo(), "Некорректный email владельца", line.raw());
+        }
+
+        LocalDate date;
+        try {
+            date = LocalDate.parse(finalDate);
+        } catch (DateTimeParseException e) {
+            return Checked.rejected(line.lineNo(), "Некорректная дата окончания действия карты, ожидается yyyy-MM-dd",
+                    line.raw());
+        }
+
+        long amount;
+        try {
+            amount = Long.parseLong(balance);
+        } catch (NumberFormatException e) {
+            return Checked.rejected(line.lineNo(), "Некорректный баланс карты", line.raw());
+        }
+        if (amount < 0) {
+            return Checked.rejected(line.lineNo(), "Баланс карты не может быть отрицательным", line.raw());
+        }
+
+        Status cardStatus;
+        try {
+            cardStatus = status.isEmpty() ? Status.ACTIVE : Status.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Checked.rejected(line.lineNo(), "Неизвестный статус карты", line.raw());
+        }
+
+        return Checked.accepted(line.lineNo(), line.raw(), email, date, amount, cardStatus.name());
+    }
+
+    private boolean tooLong(String... values) {
+        return Arrays.stream(values).anyMatch(value -> value.length() > MAX_LENGTH);
+    }
+
+    private ImportJobDTO toDTO(ImportJob job) {
+        return new ImportJobDTO(job.getId(), job.getKind(), job.getStatus(), job.getRowsRead(), job.getRowsImported(),
+                job.getRowsRejected(), job.getError(), job.getCreatedAt(), job.getStartedAt(), job.getFinishedAt());
+    }
+
+    private record Line(long lineNo, String raw) {
+    }
+
+    /**
+     * Проверенная строка: значения для промежуточной таблицы или причина отказа.
+     * shownLine - строка в том виде, в котором она сохраняется в БД
+     */
+    private record Checked(long lineNo, Object[] values, String reason, String shownLine) {
+
+        static Checked accepted(long lineNo, String shownLine, Object... values) {
+            return new Checked(lineNo, values, null, shownLine);
+        }
+
+        static Checked rejected(long lineNo, String reason, String shownLine) {
+            return new Checked(lineNo, null, reason, shownLine);
+        }
+    }
+}
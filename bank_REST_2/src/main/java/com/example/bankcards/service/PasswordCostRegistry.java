@@ -0,0 +1,105 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.AdaptiveBCryptPasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Общая для кластера стоимость BCrypt в таблице password_hashing_cost (одна строка).
+ * Каждый узел подбирает стоимость под target-latency при старте, но хеширует с общей стоимостью из БД:
+ * иначе узлы с разным железом перехешировали бы пароль при каждом входе то вверх, то вниз.
+ * Общую стоимость записывает узел, который застал её устаревшей (старше recalibrate-after) или подобранной
+ * под другую target-latency, подбирая её заново на своём железе, поэтому после смены железа хеши
+ * постепенно переходят на новую стоимость без массовой миграции.
+ * Узлы перечитывают стоимость раз в security.password-hashing.refresh.
+ * Стоимость, заданная в конфигурации (strength больше 0), одинакова на всех узлах, таблица тогда не используется
+ */
+@Slf4j
+public class PasswordCostRegistry {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO password_hashing_cost (id, strength, target_latency_ms, calibrated_at) VALUES (1, ?, ?, ?)
+            ON CONFLICT (id) DO UPDATE
+            SET strength = EXCLUDED.strength, target_latency_ms = EXCLUDED.target_latency_ms,
+                calibrated_at = EXCLUDED.calibrated_at
+            WHERE password_hashing_cost.target_latency_ms <> EXCLUDED.target_latency_ms
+               OR password_hashing_cost.calibrated_at < ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AdaptiveBCryptPasswordEncoder encoder;
+    private final boolean configured;
+    private final Duration targetLatency;
+    private final int minStrength;
+    private final int maxStrength;
+    private final Duration recalibrateAfter;
+
+    public PasswordCostRegistry(JdbcTemplate jdbcTemplate,
+                                int strength,
+                                Duration targetLatency,
+                                int minStrength,
+                                int maxStrength,
+                                Duration recalibrateAfter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.targetLatency = targetLatency;
+        this.minStrength = minStrength;
+        this.maxStrength = maxStrength;
+        this.recalibrateAfter = recalibrateAfter;
+        this.configured = strength > 0;
+        // До чтения общей стоимости хеширует со своей
+        this.encoder = new AdaptiveBCryptPasswordEncoder(configured
+                ? strength
+                : AdaptiveBCryptPasswordEncoder.calibrate(targetLatency, minStrength, maxStrength));
+    }
+
+    public AdaptiveBCryptPasswordEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Перечитывает общую стоимость, при необходимости подбирает и записывает её заново
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${security.password-hashing.refresh:1m}",
+            initialDelayString = "${security.password-hashing.refresh:1m}")
+    public void refresh() {
+        if (configured) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime staleBefore = now.minus(recalibrateAfter);
+            List<Cost> stored = jdbcTemplate.query(
+                    "SELECT strength, target_latency_ms, calibrated_at FROM password_hashing_cost WHERE id = 1",
+                    (rs, rowNum) -> new Cost(rs.getInt("strength"), rs.getLong("target_latency_ms"),
+                            rs.getTimestamp("calibrated_at").toLocalDateTime()));
+            if (stored.isEmpty()
+                    || stored.getFirst().targetLatencyMs() != targetLatency.toMillis()
+                    || stored.getFirst().calibratedAt().isBefore(staleBefore)) {
+                int calibrated = AdaptiveBCryptPasswordEncoder.calibrate(targetLatency, minStrength, maxStrength);
+                // Условие в UPSERT_SQL: из узлов, одновременно заставших устаревшую стоимость, запишет один
+                jdbcTemplate.update(UPSERT_SQL, calibrated, targetLatency.toMillis(), Timestamp.valueOf(now),
+                        Timestamp.valueOf(staleBefore));
+            }
+            Integer strength = jdbcTemplate.queryForObject(
+                    "SELECT strength FROM password_hashing_cost WHERE id = 1", Integer.class);
+            if (strength != null) {
+                encoder.setStrength(strength);
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось прочитать общую стоимость BCrypt, остаётся {}: {}", encoder.getStrength(),
+                    e.getMessage());
+        }
+    }
+
+    private record Cost(int strength, long targetLatencyMs, LocalDateTime calibratedAt) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.util.RoleEnum;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Справочник ролей в памяти: RoleEnum -> id строки таблицы roles.
+ * Загружается при старте приложения и заменяется целиком неизменяемым снимком при {@link #refresh()},
+ * поэтому чтение идёт без блокировок и без SQL. Если роли нет в снимке, справочник один раз
+ * перечитывается из БД - так подхватываются роли, добавленные после старта.
+ * Каждый вызов {@link #get} возвращает новый объект Role, общий снимок не может быть изменён через сущность
+ *
+ * @see com.example.bankcards.mapper.UserMapper
+ * @see AuthService
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoleRegistry {
+
+    private final RoleRepository roleRepository;
+
+    private volatile Map<RoleEnum, Long> roleIds = Map.of();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        Map<RoleEnum, Long> loaded = new EnumMap<>(RoleEnum.class);
+        roleRepository.findAll().forEach(role -> loaded.put(role.getName(), role.getId()));
+        roleIds = Collections.unmodifiableMap(loaded);
+        log.info("Загружен справочник ролей: {}", loaded.keySet());
+    }
+
+    public Role get(RoleEnum name) {
+        Long id = roleIds.get(name);
+        if (id == null) {
+            refresh();
+            id = roleIds.get(name);
+        }
+        if (id == null) {
+            throw new IllegalStateException("Роль не найдена: " + name);
+        }
+        return new Role(id, name);
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.exception.DifferentIdentifierException;
+import com.example.bankcards.exception.NegativeBalanceException;
+import com.example.bankcards.exception.UnactiveCardException;
+import com.example.bankcards.util.LongLongMap;
+import com.example.bankcards.util.Status;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Движок переводов в памяти для режима transfer.mode=SHARDED.
+ * Каждая карта принадлежит одному из N шардов (id по модулю N), шард обслуживается одним потоком
+ * и хранит баланс, владельца и статус своих карт в {@link LongLongMap}. Карта загружается из БД при первом обращении.
+ * Переводы применяются в памяти и попадают в очередь журнала, журнал раз в несколько миллисекунд
+ * записывается в Postgres одной транзакцией (суммарные изменения балансов в порядке id карт и записи transfers).
+ * Вызывающий поток получает ответ только после коммита своей записи журнала.
+ * Перевод между шардами выполняется в два шага: резерв суммы на шарде отправителя, затем зачисление
+ * на шарде получателя; если зачисление отклонено, резерв возвращается отправителю.
+ * Если пачку журнала записать не удалось, движок останавливает приём переводов, отклоняет все незаписанные
+ * записи журнала, сбрасывает карты шардов (они перечитываются из БД при следующем обращении) и снова принимает переводы.
+ * Задачи шардов, начатые до сброса, относятся к старой эпохе и ничего не меняют после него.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfer.mode", havingValue = "SHARDED")
+public class ShardedBalanceEngine implements DisposableBean {
+
+    private static final String FLUSH_BALANCE_SQL =
+            "UPDATE cards SET balance = balance + ?, version = version + 1 WHERE id = ?";
+
+    private static final String FLUSH_TRANSFER_SQL =
+            "INSERT INTO transfers (id, from_card_id, to_card_id, user_id, amount, created_at) "
+                    + "VALUES (nextval('transfers_seq'), ?, ?, ?, ?, ?)";
+
+    private static final String LOAD_CARD_SQL = "SELECT balance, user_id, status FROM cards WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Shard[] shards;
+    private final LinkedBlockingQueue<JournalEntry> journal = new LinkedBlockingQueue<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final ScheduledExecutorService flusher;
+    private final int flushMaxEntries;
+    private final long timeoutMs;
+    private volatile boolean accepting = true;
+
+    public ShardedBalanceEngine(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${transfer.sharded.shards:8}") int shardCount,
+                                @Value("${transfer.sharded.flush-interval-ms:5}") long flushIntervalMs,
+                                @Value("${transfer.sharded.flush-max-entries:1000}") int flushMaxEntries,
+                                @Value("${transfer.sharded.timeout-ms:5000}") long timeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushMaxEntries = flushMaxEntries;
+        this.timeoutMs = timeoutMs;
+
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "balance-journal"));
+        this.flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выполняет перевод и ждёт, пока его запись журнала будет зафиксирована в БД
+     */
+    public TransactionDTO transfer(TransactionDTO transactionDTO, Long userId) {
+        if (!accepting) {
+            throw new IllegalStateException("Переводы временно недоступны: состояние карт перечитывается из БД");
+        }
+        CompletableFuture<Void> durable = submit(transactionDTO.fromCardId(), transactionDTO.toCardId(),
+                transactionDTO.amount(), userId);
+        try {
+            durable.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return transactionDTO;
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Перевод не подтверждён вовремя, результат станет известен после записи журнала");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание перевода прервано");
+        }
+    }
+
+    /**
+     * Обновляет статус карты в памяти, если карта уже загружена в шард
+     */
+    public void updateStatus(Long cardId, Status status) {
+        Shard shard = shardOf(cardId);
+        shard.call(() -> {
+            if (shard.statuses.containsKey(cardId)) {
+                shard.statuses.put(cardId, status.ordinal());
+            }
+            return null;
+        }).join();
+    }
+
+    /**
+     * Забывает удалённую карту
+     */
+    public void evict(Long cardId) {
+        Shard shard = shardOf(cardId);
+        shard.call(() -> {
+            shard.balances.remove(cardId);
+            shard.owners.remove(cardId);
+            shard.statuses.remove(cardId);
+            return null;
+        }).join();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        accepting = false;
+        flusher.shutdown();
+        flusher.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            shard.executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        // Дописываем то, что успело попасть в журнал. Шарды уже остановлены, поэтому при ошибке только отклоняем записи
+        List<JournalEntry> batch;
+        while (!(batch = drain()).isEmpty()) {
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                log.error("Ошибка записи журнала переводов при остановке", e);
+                fail(batch, e);
+                fail(drain(Integer.MAX_VALUE), e);
+                return;
+            }
+            batch.forEach(entry -> entry.durable().complete(null));
+        }
+    }
+
+    private CompletableFuture<Void> submit(long fromCardId, long toCardId, long amount, long userId) {
+        Shard source = shardOf(fromCardId);
+        Shard target = shardOf(toCardId);
+        long submittedEpoch = epoch.get();
+
+        if (source == target) {
+            return source.call(() -> {
+                checkEpoch(submittedEpoch);
+                source.checkDebit(fromCardId, userId, amount);
+                source.checkCredit(toCardId, userId);
+                source.balances.addTo(fromCardId, -amount);
+                source.balances.addTo(toCardId, amount);
+                return append(fromCardId, toCardId, amount, userId);
+            }).thenCompose(durable -> durable);
+        }
+
+        // Шаг 1: резерв на шарде отправителя. Шаг 2: зачисление на шарде получателя и запись в журнал
+        return source.call(() -> {
+                    checkEpoch(submittedEpoch);
+                    source.checkDebit(fromCardId, userId, amount);
+                    source.balances.addTo(fromCardId, -amount);
+                    return null;
+                })
+                .thenCompose(reserved -> target.call(() -> {
+                            checkEpoch(submittedEpoch);
+                            target.checkCredit(toCardId, userId);
+                            target.balances.addTo(toCardId, amount);
+                            return append(fromCardId, toCardId, amount, userId);
+                        })
+                        .exceptionallyCompose(rejected -> source.call(() -> {
+                            // После сброса шарда резерв уже отброшен вместе с его картами
+                            if (epoch.get() == submittedEpoch) {
+                                source.balances.addTo(fromCardId, amount);
+                            }
+                            throw unwrap(rejected);
+                        })))
+                .thenCompose(durable -> durable);
+    }
+
+    /**
+     * Выполняется в потоке шарда: задачи, начатые до сброса шардов или во время него, ничего не меняют
+     */
+    private void checkEpoch(long submittedEpoch) {
+        if (!accepting || epoch.get() != submittedEpoch) {
+            throw new IllegalStateException("Переводы временно недоступны: состояние карт перечитывается из БД");
+        }
+    }
+
+    private CompletableFuture<Void> append(long fromCardId, long toCardId, long amount, long userId) {
+        JournalEntry entry = new JournalEntry(fromCardId, toCardId, amount, userId, new CompletableFuture<>());
+        journal.add(entry);
+        return entry.durable();
+    }
+
+    private void flushSafely() {
+        List<JournalEntry> batch;
+        do {
+            batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                log.error("Ошибка записи журнала переводов, состояние карт будет перечитано из БД", e);
+                recover(batch, e);
+                return;
+            }
+            batch.forEach(entry -> entry.durable().complete(null));
+            // журнал накопил больше одной пачки, пишем следующую сразу
+        } while (batch.size() == flushMaxEntries);
+    }
+
+    private List<JournalEntry> drain() {
+        return drain(flushMaxEntries);
+    }
+
+    private List<JournalEntry> drain(int maxEntries) {
+        List<JournalEntry> batch = new ArrayList<>(Math.min(maxEntries, journal.size()));
+        journal.drainTo(batch, maxEntries);
+        return batch;
+    }
+
+    /**
+     * Записывает пачку одной транзакцией. Балансы обновляются в порядке возрастания id карт,
+     * как и при блокировке карт в режиме LOCKING, поэтому запись журнала не попадает в deadlock с другими писателями.
+     * Если карта удалена из БД после загрузки в шард, пачка целиком откатывается
+     */
+    private void write(List<JournalEntry> batch) {
+        LongLongMap deltas = new LongLongMap(batch.size() * 2);
+        for (JournalEntry entry : batch) {
+            deltas.addTo(entry.fromCardId(), -entry.amount());
+            deltas.addTo(entry.toCardId(), entry.amount());
+        }
+        long[] cardIds = new long[deltas.size()];
+        int[] next = {0};
+        deltas.forEach((cardId, delta) -> cardIds[next[0]++] = cardId);
+        Arrays.sort(cardIds);
+        List<Object[]> balanceArgs = new ArrayList<>(cardIds.length);
+        for (long cardId : cardIds) {
+            balanceArgs.add(new Object[]{deltas.get(cardId, 0L), cardId});
+        }
+
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        List<Object[]> transferArgs = batch.stream()
+                .map(entry -> new Object[]{entry.fromCardId(), entry.toCardId(), entry.userId(), entry.amount(), createdAt})
+                .toList();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] updated = jdbcTemplate.batchUpdate(FLUSH_BALANCE_SQL, balanceArgs);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    throw new IllegalStateException("Карта " + cardIds[i] + " не найдена в БД, пачка журнала не записана");
+                }
+            }
+            jdbcTemplate.batchUpdate(FLUSH_TRANSFER_SQL, transferArgs);
+        });
+    }
+
+    /**
+     * Останавливает приём переводов, сбрасывает карты всех шардов и отклоняет все незаписанные записи журнала.
+     * Выполняется в потоке журнала, поэтому параллельной записи пачки нет.
+     * Балансы в памяти не откатываются по одной записи: более поздние переводы могли уже потратить зачисленное,
+     * вместо этого шарды перечитывают карты из БД, где лежит только записанный журнал.
+     * Если сбросить шарды не удалось, движок остаётся остановленным
+     */
+    private void recover(List<JournalEntry> batch, RuntimeException cause) {
+        accepting = false;
+        epoch.incrementAndGet();
+        try {
+            for (Shard shard : shards) {
+                shard.call(() -> {
+                    shard.balances.clear();
+                    shard.owners.clear();
+                    shard.statuses.clear();
+                    return null;
+                }).join();
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось сбросить шарды, переводы остановлены", e);
+            fail(batch, cause);
+            fail(drain(Integer.MAX_VALUE), cause);
+            return;
+        }
+        // Все задачи старой эпохи завершены, их записи журнала уже в очереди
+        List<JournalEntry> pending = drain(Integer.MAX_VALUE);
+        accepting = true;
+        log.warn("Шарды сброшены, переводы снова принимаются");
+        fail(batch, cause);
+        fail(pending, cause);
+    }
+
+    private void fail(List<JournalEntry> entries, RuntimeException cause) {
+        IllegalStateException failure = new IllegalStateException(
+                "Перевод не подтверждён: ошибка записи журнала, " + cause.getMessage(), cause);
+        entries.forEach(entry -> entry.durable().completeExceptionally(failure));
+    }
+
+    private Shard shardOf(long cardId) {
+        return shards[(int) Math.floorMod(cardId, (long) shards.length)];
+    }
+
+    private static RuntimeException unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new IllegalStateException(cause);
+    }
+
+    private record JournalEntry(long fromCardId, long toCardId, long amount, long userId,
+                                CompletableFuture<Void> durable) {
+    }
+
+    /**
+     * Шард владеет своими картами, все обращения к его таблицам выполняются в его единственном потоке
+     */
+    private final class Shard {
+
+        private final ExecutorService executor;
+        private final LongLongMap balances = new LongLongMap();
+        private final LongLongMap owners = new LongLongMap();
+        private final LongLongMap statuses = new LongLongMap();
+
+        private Shard(int index) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "balance-shard-" + index));
+        }
+
+        private <T> CompletableFuture<T> call(Supplier<T> task) {
+            return CompletableFuture.supplyAsync(task, executor);
+        }
+
+        private void checkDebit(long cardId, long userId, long amount) {
+            checkCard(cardId, userId);
+            if (balances.get(cardId, 0L) < amount) {
+                throw new NegativeBalanceException("Недостаточно средств");
+            }
+        }
+
+        private void checkCredit(long cardId, long userId) {
+            checkCard(cardId, userId);
+        }
+
+        private void checkCard(long cardId, long userId) {
+            if (!balances.containsKey(cardId) && !load(cardId)) {
+                throw new EntityNotFoundException("Указанная карта не найдена");
+            }
+            if (owners.get(cardId, -1L) != userId) {
+                throw new DifferentIdentifierException("Введен не верный идентификатор");
+            }
+            if (statuses.get(cardId, -1L) != Status.ACTIVE.ordinal()) {
+                throw new UnactiveCardException("Both cards must be active for transaction");
+            }
+        }
+
+        /**
+         * Загружает карту из БД. Несохранённых изменений по ней быть не может:
+         * в журнал попадают только карты, уже находящиеся в памяти
+         */
+        private boolean load(long cardId) {
+            return Boolean.TRUE.equals(jdbcTemplate.query(LOAD_CARD_SQL, rs -> {
+                if (!rs.next()) {
+                    return false;
+                }
+                balances.put(cardId, rs.getLong("balance"));
+                owners.put(cardId, rs.getLong("user_id"));
+                statuses.put(cardId, Status.valueOf(rs.getString("status")).ordinal());
+                return true;
+            }, cardId));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.UsersRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+/**
+ * Текущие версии токенов пользователей в памяти.
+ * JWT принимается, только если его claim ver совпадает с users.token_version: изменение
+ * или удаление пользователя увеличивает версию и отзывает все выданные ему токены.
+ * Версия читается из БД одним запросом по первичному ключу при промахе и после изменений на этом узле,
+ * записи живут security.token-version.ttl, поэтому изменения с других узлов видны не позже чем через ttl.
+ * Это единственное обращение к пользователю на запрос с токеном текущего формата, поэтому кэш стоит здесь,
+ * а не перед загрузкой UserDetails. Статистика кэша публикуется метриками cache.* с тегом cache=user.token-version,
+ * security.token-version.cache-size=0 отключает кэш
+ *
+ * @see com.example.bankcards.util.AuthTokenFilter
+ */
+@Component
+public class TokenVersionRegistry {
+
+    /**
+     * Версия удалённого пользователя, не совпадает ни с одним claim ver
+     */
+    private static final long REVOKED = -1L;
+
+    private final LoadingCache<Long, Long> versions;
+
+    public TokenVersionRegistry(UsersRepository usersRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${security.token-version.cache-size:100000}") long cacheSize,
+                                @Value("${security.token-version.ttl:30s}") Duration ttl) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheSize > 0 ? ttl : Duration.ZERO)
+                .recordStats()
+                .build(userId -> usersRepository.findTokenVersionById(userId).orElse(REVOKED));
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "user.token-version");
+    }
+
+    public boolean isCurrent(UserDetailsImpl userDetails) {
+        return versions.get(userDetails.getId()) == userDetails.getTokenVersion();
+    }
+
+    /**
+     * Сбрасывает версию пользователя после коммита его изменения, следующий запрос перечитает её из БД
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        versions.invalidate(event.userId());
+    }
+}
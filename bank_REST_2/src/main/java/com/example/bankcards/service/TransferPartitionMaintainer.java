@@ -0,0 +1,42 @@
+package com.example.bankcards.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Заранее создаёт месячные секции журнала переводов (функция create_transfers_partition из миграций),
+ * чтобы новые переводы не попадали в секцию по умолчанию
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransferPartitionMaintainer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${transfer.ledger.months-ahead:2}")
+    private int monthsAhead = 2;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${transfer.ledger.partition-cron:0 0 3 * * *}")
+    public void createUpcomingPartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            try {
+                jdbcTemplate.query("SELECT create_transfers_partition(?)", (RowCallbackHandler) rs -> {
+                }, month.plusMonths(i));
+            } catch (RuntimeException e) {
+                log.error("Не удалось создать секцию журнала переводов за {}: {}", month.plusMonths(i), e.getMessage());
+            }
+        }
+    }
+}
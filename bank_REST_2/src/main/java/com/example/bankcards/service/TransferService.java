@@ -0,0 +1,127 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferDTO;
+import com.example.bankcards.dto.TransferHistoryDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.exception.DifferentIdentifierException;
+import com.example.bankcards.mapper.TransferMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс сервис отвечающий за журнал переводов: запись переводов и постраничную выдачу истории
+ *
+ * @see Transfer
+ * @see TransferRepository
+ * @see TransferMapper
+ */
+
+@Service
+@RequiredArgsConstructor
+public class TransferService {
+
+    /**
+     * Курсор первой страницы: любая запись журнала строго меньше этой пары (created_at, id)
+     */
+    private static final LocalDateTime FIRST_PAGE_CREATED_AT = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final int MAX_LIMIT = 100;
+
+    private final TransferRepository transferRepository;
+    private final TransferMapper transferMapper;
+    private final CardRepository cardRepository;
+
+    /**
+     * Записывает перевод в журнал в текущей транзакции перевода
+     */
+    @Transactional
+    public void recordTransfer(TransactionDTO transactionDTO, Long userId) {
+        transferRepository.save(transferMapper.makeATransfer(transactionDTO, userId, now()));
+    }
+
+    /**
+     * Записывает пакет переводов в журнал, вставки уходят в БД пакетами JDBC
+     */
+    @Transactional
+    public void recordTransfers(List<TransactionDTO> transfers, Long userId) {
+        LocalDateTime createdAt = now();
+        transferRepository.saveAll(transfers.stream()
+                .map(transfer -> transferMapper.makeATransfer(transfer, userId, createdAt))
+                .toList());
+    }
+
+    /**
+     * Записывает пакет переводов разных пользователей, userIds.get(i) - владелец перевода transfers.get(i)
+     */
+    @Transactional
+    public void recordTransfers(List<TransactionDTO> transfers, List<Long> userIds) {
+        LocalDateTime createdAt = now();
+        List<Transfer> entities = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            entities.add(transferMapper.makeATransfer(transfers.get(i), userIds.get(i), createdAt));
+        }
+        transferRepository.saveAll(entities);
+    }
+
+    @Transactional(readOnly = true)
+    public TransferHistoryDTO findCardHistory(Long cardId, LocalDateTime beforeCreatedAt, Long beforeId, int limit,
+                                              UserDetailsImpl userDetails) {
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(() -> new EntityNotFoundException("Указанная карта не найдена"));
+        if (!card.getUser().getId().equals(userDetails.getId())) {
+            throw new DifferentIdentifierException("Идентификатор пользователя и владельца карты разные. В доступе отказано");
+        }
+
+        int pageSize = pageSize(limit);
+        List<Transfer> transfers = beforeCreatedAt == null || beforeId == null
+                ? transferRepository.findCardHistory(cardId, FIRST_PAGE_CREATED_AT, Long.MAX_VALUE, pageSize)
+                : transferRepository.findCardHistory(cardId, beforeCreatedAt, beforeId, pageSize);
+        return makeAHistory(transfers, pageSize);
+    }
+
+    @Transactional(readOnly = true)
+    public TransferHistoryDTO findUserHistory(Long userId, LocalDateTime beforeCreatedAt, Long beforeId, int limit,
+                                              UserDetailsImpl userDetails) {
+        if (!userDetails.getId().equals(userId)) {
+            throw new DifferentIdentifierException("Идентификатор пользователя и владельца карты разные. В доступе отказано");
+        }
+
+        int pageSize = pageSize(limit);
+        List<Transfer> transfers = beforeCreatedAt == null || beforeId == null
+                ? transferRepository.findUserHistory(userId, FIRST_PAGE_CREATED_AT, Long.MAX_VALUE, pageSize)
+                : transferRepository.findUserHistory(userId, beforeCreatedAt, beforeId, pageSize);
+        return makeAHistory(transfers, pageSize);
+    }
+
+    private TransferHistoryDTO makeAHistory(List<Transfer> transfers, int pageSize) {
+        List<TransferDTO> content = transfers.stream()
+                .map(transferMapper::makeATransferDTO)
+                .toList();
+
+        if (content.size() < pageSize) {
+            return new TransferHistoryDTO(content, null, null);
+        }
+        TransferDTO last = content.getLast();
+        return new TransferHistoryDTO(content, last.createdAt(), last.id());
+    }
+
+    private int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    private LocalDateTime now() {
+        // В PostgreSQL timestamp хранится с точностью до микросекунд
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.service;
+
+/**
+ * Событие об изменении или удалении пользователя, публикуется {@link UserService} внутри транзакции.
+ * Слушатели сбрасывают кэши пользователя после коммита
+ *
+ * @param userId идентификатор пользователя
+ */
+public record UserChangedEvent(Long userId) {
+}
@@ -23,7 +23,8 @@ public class UserDetailsFactory {
                 user.getEmail(),
                 user.getPassword(),
                 authorities,
-                user.getPhoneNumber()
+                user.getPhoneNumber(),
+                user.getTokenVersion() == null ? 0L : user.getTokenVersion()
         );
     }
 }
\ No newline at end of file
@@ -22,14 +22,26 @@ public class UserDetailsImpl implements UserDetails {
 
     private final Collection<? extends GrantedAuthority> authorities;
 
+    /**
+     * Версия токенов пользователя на момент загрузки, попадает в claim ver выдаваемого JWT
+     */
+    private final long tokenVersion;
+
     public UserDetailsImpl(Long id, String username, String email, String password,
                            Collection<? extends GrantedAuthority> authorities, String phoneNumber) {
+        this(id, username, email, password, authorities, phoneNumber, 0L);
+    }
+
+    public UserDetailsImpl(Long id, String username, String email, String password,
+                           Collection<? extends GrantedAuthority> authorities, String phoneNumber,
+                           long tokenVersion) {
         this.id = id;
         this.username = username;
         this.email = email;
         this.password = password;
         this.authorities = authorities;
         this.phoneNumber = phoneNumber;
+        this.tokenVersion = tokenVersion;
     }
 
     @Override
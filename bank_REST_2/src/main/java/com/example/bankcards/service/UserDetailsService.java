@@ -2,24 +2,59 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UsersRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Загрузка пользователя для Spring Security по email, всегда из БД.
+ * Нужна при входе по паролю и для токенов старого формата без uid: запросы с токенами текущего формата
+ * берут пользователя из claims и обращаются к БД только за версией токена, которая кэшируется
+ * в {@link TokenVersionRegistry}, поэтому отдельный кэш UserDetails не нужен.
+ * Как UserDetailsPasswordService сохраняет перехешированный при входе пароль
+ */
 @Service
-@RequiredArgsConstructor
-public class UserDetailsService implements org.springframework.security.core.userdetails.UserDetailsService {
+public class UserDetailsService implements org.springframework.security.core.userdetails.UserDetailsService,
+        UserDetailsPasswordService {
 
     private final UsersRepository userRepository;
 
     private final UserDetailsFactory userDetailsFactory;
 
+    private final TransactionTemplate readTransaction;
+
+    private final TransactionTemplate writeTransaction;
+
+    public UserDetailsService(UsersRepository userRepository,
+                              UserDetailsFactory userDetailsFactory,
+                              PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.userDetailsFactory = userDetailsFactory;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
-        return userDetailsFactory.build(user);
+        return readTransaction.execute(status -> {
+            User user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+            return userDetailsFactory.build(user);
+        });
+    }
+
+    /**
+     * Сохраняет новый хеш пароля пользователя, ФИО, роли и версия токенов не меняются
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) user;
+        writeTransaction.executeWithoutResult(status -> userRepository.updatePassword(userDetails.getId(), newPassword));
+        return new UserDetailsImpl(userDetails.getId(), userDetails.getUsername(), userDetails.getEmail(), newPassword,
+                userDetails.getAuthorities(), userDetails.getPhoneNumber(), userDetails.getTokenVersion());
     }
 }
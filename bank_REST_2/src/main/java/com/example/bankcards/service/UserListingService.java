@@ -0,0 +1,84 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserExportDTO;
+import com.example.bankcards.util.ExportFormat;
+import com.example.bankcards.util.ExportWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Класс сервис для выгрузки всех пользователей без загрузки сущностей.
+ * Пользователи читаются через JDBC по курсору PostgreSQL с fetch-size строк за раз в read-only транзакции
+ * и пишутся в ответ потоком (CSV или NDJSON), поэтому память не зависит от размера таблицы.
+ * Роли собираются подзапросом по первичному ключу user_roles для каждой строки, без GROUP BY по всей таблице.
+ * Пароли не выгружаются
+ *
+ * @see com.example.bankcards.controller.UserController
+ */
+@Service
+public class UserListingService {
+
+    private static final String SELECT_USERS = """
+            SELECT u.id, u.first_name, u.second_name, u.middle_name, u.email, u.phone_number,
+                   (SELECT string_agg(r.name, ' ' ORDER BY r.name)
+                    FROM user_roles ur JOIN roles r ON r.id = ur.role_id
+                    WHERE ur.user_id = u.id) AS roles
+            FROM users u
+            """;
+
+    private static final String[] EXPORT_COLUMNS = {"id", "first_name", "second_name", "middle_name",
+            "email", "phone_number", "roles"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter objectWriter;
+
+    public UserListingService(DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${cards.stream.fetch-size:1000}") int fetchSize) {
+        // Отдельный JdbcTemplate: PostgreSQL отдаёт строки порциями только при fetch size > 0 и открытой транзакции
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectWriter = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void exportUsers(OutputStream outputStream, ExportFormat format, boolean compress) throws IOException {
+        try (ExportWriter writer = new ExportWriter(outputStream, format, compress, objectWriter, EXPORT_COLUMNS)) {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(SELECT_USERS, rs -> {
+                UserExportDTO user = new UserExportDTO(
+                        rs.getLong("id"),
+                        rs.getString("first_name"),
+                        rs.getString("second_name"),
+                        rs.getString("middle_name"),
+                        rs.getString("email"),
+                        rs.getString("phone_number"),
+                        rs.getString("roles"));
+                try {
+                    writer.write(user, user.id(), user.firstName(), user.secondName(), user.middleName(),
+                            user.email(), user.phoneNumber(), user.roles());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.example.bankcards.mapper.UserMapper;
 import com.example.bankcards.repository.UsersRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,6 +28,7 @@ public class UserService {
 
     private final UsersRepository userRepository;
     private final UserMapper userMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional(readOnly = true)
     public List<UserDTO> findAllUsers() {
@@ -59,15 +61,26 @@ public class UserService {
         return userMapper.makeAUserDTO(savedUser);
     }
 
+    /**
+     * Удаляет пользователя, его JWT перестают приниматься после коммита
+     */
     @Transactional
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
     }
 
+    /**
+     * Изменяет пользователя и отзывает выданные ему JWT: роли и ФИО в них могли устареть
+     */
     @Transactional
     public UserDTO editUser(UserDTO userDTO) {
         User user = userMapper.makeAUser(userDTO);
         userRepository.save(user);
+        if (userDTO.getId() != null) {
+            userRepository.incrementTokenVersion(userDTO.getId());
+            eventPublisher.publishEvent(new UserChangedEvent(userDTO.getId()));
+        }
         return userDTO;
     }
 }
@@ -0,0 +1,108 @@
+package com.example.bankcards.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt с подобранной под железо стоимостью.
+ * {@link #calibrate} при старте измеряет хеширование на этой машине и выбирает стоимость,
+ * при которой один хеш занимает около target-latency. {@link #upgradeEncoding} требует перехеширования,
+ * если стоимость сохранённого хеша отличается от текущей в любую сторону: после успешного входа
+ * DaoAuthenticationProvider перехеширует пароль через UserDetailsPasswordService, и при смене железа
+ * хеши постепенно переходят на новую стоимость без массовой миграции.
+ * Стоимость меняется на ходу через {@link #setStrength}: узлы кластера берут общую стоимость
+ * из БД (см. {@link com.example.bankcards.service.PasswordCostRegistry}), чтобы не перехешировать один пароль
+ * туда и обратно
+ */
+@Slf4j
+public class AdaptiveBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+    private static final int PROBE_STRENGTH = 8;
+    private static final int PROBE_ROUNDS = 3;
+    private static final int MIN_STRENGTH = 4;
+    private static final int MAX_STRENGTH = 31;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Getter
+    private volatile int strength;
+
+    public AdaptiveBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    public void setStrength(int strength) {
+        if (strength < MIN_STRENGTH || strength > MAX_STRENGTH) {
+            throw new IllegalArgumentException("Стоимость BCrypt должна быть от 4 до 31: " + strength);
+        }
+        if (this.strength != strength) {
+            log.info("Стоимость BCrypt изменена с {} на {}", this.strength, strength);
+            this.strength = strength;
+        }
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        if (rawPassword == null) {
+            throw new IllegalArgumentException("rawPassword cannot be null");
+        }
+        return BCrypt.hashpw(rawPassword.toString(), BCrypt.gensalt(strength, random));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            return false;
+        }
+        return Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    /**
+     * Подбирает стоимость BCrypt, при которой хеш занимает около target на этой машине.
+     * Каждая единица стоимости удваивает время, поэтому стоимость оценивается по замеру при стоимости 8
+     * и проверяется одним хешем: если он дольше target в полтора раза, стоимость уменьшается на единицу
+     */
+    public static int calibrate(Duration target, int minStrength, int maxStrength) {
+        long probeNanos = measure(PROBE_STRENGTH);
+        for (int i = 1; i < PROBE_ROUNDS; i++) {
+            probeNanos = Math.min(probeNanos, measure(PROBE_STRENGTH));
+        }
+
+        double doublings = Math.log((double) target.toNanos() / probeNanos) / Math.log(2);
+        int strength = clamp(PROBE_STRENGTH + (int) Math.round(doublings), minStrength, maxStrength);
+
+        long measured = measure(strength);
+        if (measured > target.toNanos() * 3 / 2 && strength > minStrength) {
+            strength--;
+            measured /= 2;
+        }
+
+        log.info("Стоимость BCrypt {}: хеш около {} мс при цели {} мс", strength,
+                measured / 1_000_000, target.toMillis());
+        return strength;
+    }
+
+    private static long measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long startedAt = System.nanoTime();
+        encoder.encode("calibration");
+        return System.nanoTime() - startedAt;
+    }
+
+    private static int clamp(int strength, int minStrength, int maxStrength) {
+        return Math.max(minStrength, Math.min(maxStrength, strength));
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.bankcards.util;
 
+import com.example.bankcards.service.TokenVersionRegistry;
+import com.example.bankcards.service.UserDetailsImpl;
 import com.example.bankcards.service.UserDetailsService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,22 +18,23 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @RequiredArgsConstructor
 @Slf4j
 public class AuthTokenFilter extends OncePerRequestFilter {
     private final JwtUtils jwtUtils;
     private final UserDetailsService cardUserService;
+    private final TokenVersionRegistry tokenVersionRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String userEmail = jwtUtils.getUserEmailFromJwtToken(jwt);
-
-                UserDetails userDetails = cardUserService.loadUserByUsername(userEmail);
+            Optional<Claims> claims = jwt == null ? Optional.empty() : jwtUtils.parseClaims(jwt);
+            UserDetails userDetails = claims.map(this::authenticatedUser).orElse(null);
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(
                                 userDetails,
@@ -47,6 +51,24 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Пользователь берётся из claims токена без запроса в БД, если версия токена ещё действует.
+     * Токены старого формата без uid по-прежнему проверяются загрузкой пользователя по email
+     *
+     * @return null, если токен отозван
+     */
+    private UserDetails authenticatedUser(Claims claims) {
+        Optional<UserDetailsImpl> fromToken = jwtUtils.toUserDetails(claims);
+        if (fromToken.isEmpty()) {
+            return cardUserService.loadUserByUsername(claims.getSubject());
+        }
+        if (!tokenVersionRegistry.isCurrent(fromToken.get())) {
+            log.debug("JWT revoked for user {}", fromToken.get().getId());
+            return null;
+        }
+        return fromToken.get();
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
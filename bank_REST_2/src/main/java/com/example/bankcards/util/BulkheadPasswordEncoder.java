@@ -0,0 +1,123 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.PasswordHashingOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполняет хеширование и проверку паролей в отдельном ограниченном пуле потоков.
+ * BCrypt нагружает процессор десятки миллисекунд на вызов; при волне входов после сбоя он занял бы все
+ * потоки Tomcat, и чтения карт и переводы встали бы в очередь за ним. Здесь одновременно работает не больше
+ * threads хеширований, ещё queue-capacity ждут в очереди, остальные запросы сразу получают
+ * {@link PasswordHashingOverloadedException} (503 с Retry-After). Вызывающий поток ждёт результат не дольше timeout.
+ * Метрики: auth.password.queue.depth - длина очереди, auth.password.hash.latency - время хеширования
+ * и проверки без ожидания в очереди, auth.password.rejected - отказы из-за перегрузки
+ */
+public class BulkheadPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final long retryAfterSeconds;
+    private final Timer encodeLatency;
+    private final Timer matchesLatency;
+    private final Counter rejected;
+
+    public BulkheadPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity,
+                                   Duration timeout, Duration retryAfter, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timeoutMs = timeout.toMillis();
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.password.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Запросы хеширования паролей, ожидающие свободного потока")
+                .register(meterRegistry);
+        this.encodeLatency = Timer.builder("auth.password.hash.latency")
+                .tag("operation", "encode")
+                .description("Время хеширования пароля без ожидания в очереди")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.matchesLatency = Timer.builder("auth.password.hash.latency")
+                .tag("operation", "matches")
+                .description("Время проверки пароля без ожидания в очереди")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password.rejected")
+                .description("Отказы в хешировании пароля из-за заполненной очереди")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeLatency.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> matchesLatency.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Проверяет только формат хеша, без BCrypt, поэтому выполняется в вызывающем потоке
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw overloaded();
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw overloaded();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание проверки пароля прервано");
+        }
+    }
+
+    private PasswordHashingOverloadedException overloaded() {
+        return new PasswordHashingOverloadedException("Сервис входа перегружен, повторите запрос позже", retryAfterSeconds);
+    }
+}
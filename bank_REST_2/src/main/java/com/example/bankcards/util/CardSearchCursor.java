@@ -0,0 +1,45 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор постраничного поиска карт: ключ и направление сортировки и значения (ключ, id) последней карты страницы.
+ * Клиенту передаётся как непрозрачная строка Base64
+ */
+public record CardSearchCursor(CardSortKey sortKey, boolean descending, Object lastValue, long lastId) {
+
+    private static final String VERSION = "v1";
+
+    public String encode() {
+        String raw = String.join("|", VERSION, sortKey.name(), descending ? "desc" : "asc",
+                String.valueOf(lastValue), String.valueOf(lastId));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбирает курсор и проверяет, что он выдан для той же сортировки
+     *
+     * @throws InvalidRequestException курсор повреждён или выдан для другой сортировки (ответ 400)
+     */
+    public static CardSearchCursor decode(String cursor, CardSortKey sortKey, boolean descending) {
+        CardSearchCursor decoded;
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 5 || !VERSION.equals(parts[0])) {
+                throw new InvalidRequestException("Неверный курсор");
+            }
+            CardSortKey cursorKey = CardSortKey.valueOf(parts[1]);
+            decoded = new CardSearchCursor(cursorKey, "desc".equals(parts[2]), cursorKey.parse(parts[3]),
+                    Long.parseLong(parts[4]));
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Неверный курсор");
+        }
+        if (decoded.sortKey() != sortKey || decoded.descending() != descending) {
+            throw new InvalidRequestException("Курсор выдан для другой сортировки");
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bankcards.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Ключи сортировки постраничного поиска карт по ключу (keyset), вторым ключом всегда идёт id
+ * ID - только по id
+ * FINAL_DATE - по дате окончания действия
+ * BALANCE - по балансу
+ */
+public enum CardSortKey {
+
+    ID("id") {
+        @Override
+        public Object read(ResultSet rs) throws SQLException {
+            return rs.getLong("id");
+        }
+
+        @Override
+        public Object parse(String value) {
+            return Long.parseLong(value);
+        }
+    },
+    FINAL_DATE("final_date") {
+        @Override
+        public Object read(ResultSet rs) throws SQLException {
+            return rs.getTimestamp("final_date").toLocalDateTime();
+        }
+
+        @Override
+        public Object parse(String value) {
+            return LocalDateTime.parse(value);
+        }
+    },
+    BALANCE("balance") {
+        @Override
+        public Object read(ResultSet rs) throws SQLException {
+            return rs.getLong("balance");
+        }
+
+        @Override
+        public Object parse(String value) {
+            return Long.parseLong(value);
+        }
+    };
+
+    private final String column;
+
+    CardSortKey(String column) {
+        this.column = column;
+    }
+
+    public String column() {
+        return column;
+    }
+
+    /**
+     * Значение ключа из строки результата, попадает в курсор следующей страницы
+     */
+    public abstract Object read(ResultSet rs) throws SQLException;
+
+    /**
+     * Значение ключа из курсора
+     */
+    public abstract Object parse(String value);
+}
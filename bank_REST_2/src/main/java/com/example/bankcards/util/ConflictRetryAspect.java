@@ -0,0 +1,106 @@
+package com.example.bankcards.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.StaleStateException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Повторяет методы, помеченные {@link RetryOnConflict}, при конфликте версий или ошибке сериализации (SQLState 40001).
+ * Аспект выполняется снаружи транзакции, поэтому каждая попытка получает новую транзакцию.
+ * Если метод вызван внутри уже открытой транзакции, повтор невозможен и исключение пробрасывается как есть.
+ * Пауза между попытками - экспоненциальная с полным джиттером.
+ * Метрики: card.operation.retries и card.operation.giveups с тегом operation
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class ConflictRetryAspect {
+
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${retry.initial-backoff-ms:10}")
+    private long initialBackoffMs = 10;
+
+    @Value("${retry.max-backoff-ms:200}")
+    private long maxBackoffMs = 200;
+
+    @Around("@annotation(com.example.bankcards.util.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String operation = joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    counter("card.operation.giveups", operation).increment();
+                    log.warn("Операция {} не выполнена после {} попыток: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                counter("card.operation.retries", operation).increment();
+                pause(attempt, e);
+            }
+        }
+    }
+
+    static boolean isConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof OptimisticLockingFailureException
+                    || t instanceof OptimisticLockException
+                    || t instanceof StaleStateException) {
+                return true;
+            }
+            if (t instanceof SQLException sqlException
+                    && SERIALIZATION_FAILURE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void pause(int attempt, RuntimeException cause) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.bankcards.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор и запись строк CSV (RFC 4180, разделитель - запятая).
+ * Значение в кавычках может содержать запятые и удвоенные кавычки, перевод строки внутри значения не поддерживается.
+ * Записанные строки подходят для COPY ... (FORMAT csv): null пишется пустым значением без кавычек
+ * и читается как NULL, строки всегда в кавычках, поэтому пустая строка остаётся пустой строкой
+ */
+public final class CsvFormat {
+
+    private CsvFormat() {
+    }
+
+    /**
+     * Разбивает строку на значения
+     *
+     * @throws IllegalArgumentException если кавычка не закрыта или после закрывающей кавычки нет разделителя
+     */
+    public static List<String> parse(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        int i = 0;
+        while (true) {
+            value.setLength(0);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("Не закрыта кавычка");
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("После закрывающей кавычки ожидается запятая");
+                }
+            } else {
+                while (i < line.length() && line.charAt(i) != ',') {
+                    value.append(line.charAt(i++));
+                }
+            }
+            values.add(value.toString());
+            if (i >= line.length()) {
+                return values;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Дописывает значения одной строкой CSV с переводом строки в конце
+     */
+    public static void append(StringBuilder out, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof CharSequence text) {
+                out.append('"');
+                for (int j = 0; j < text.length(); j++) {
+                    char c = text.charAt(j);
+                    if (c == '"') {
+                        out.append('"');
+                    }
+                    out.append(c);
+                }
+                out.append('"');
+            } else if (value != null) {
+                out.append(value);
+            }
+        }
+        out.append('\n');
+    }
+}
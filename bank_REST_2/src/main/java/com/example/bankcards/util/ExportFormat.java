@@ -0,0 +1,29 @@
+package com.example.bankcards.util;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Форматы потоковой выгрузки
+ * CSV - заголовок и по строке на запись
+ * NDJSON - по JSON-объекту на строку
+ */
+public enum ExportFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
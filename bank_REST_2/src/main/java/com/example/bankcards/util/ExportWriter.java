@@ -0,0 +1,96 @@
+package com.example.bankcards.util;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Пишет строки выгрузки в выходной поток по одной, ничего не накапливая: CSV через {@link CsvFormat}
+ * или NDJSON через Jackson, при необходимости сжимая gzip на лету (самый быстрый уровень сжатия).
+ * close дописывает хвост формата и gzip, но не закрывает сам поток
+ */
+public class ExportWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream target;
+    private final GZIPOutputStream gzip;
+    private final Writer csv;
+    private final SequenceWriter json;
+    private final StringBuilder line = new StringBuilder();
+    private long written;
+
+    /**
+     * @param objectWriter писатель JSON без AUTO_CLOSE_TARGET, используется только для NDJSON
+     * @param header       названия столбцов CSV
+     */
+    public ExportWriter(OutputStream outputStream, ExportFormat format, boolean compress,
+                        ObjectWriter objectWriter, String... header) throws IOException {
+        this.gzip = compress ? new FastGzipOutputStream(outputStream) : null;
+        this.target = compress ? gzip : outputStream;
+        if (format == ExportFormat.CSV) {
+            this.csv = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.json = null;
+            CsvFormat.append(line, (Object[]) header);
+            csv.append(line);
+        } else {
+            this.csv = null;
+            this.json = objectWriter.withRootValueSeparator("\n").writeValues(target);
+        }
+    }
+
+    /**
+     * Принимает ли клиент ответ в gzip по заголовку Accept-Encoding
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * @param row       объект для NDJSON
+     * @param csvValues значения столбцов для CSV в порядке заголовка
+     */
+    public void write(Object row, Object... csvValues) throws IOException {
+        if (csv != null) {
+            line.setLength(0);
+            CsvFormat.append(line, csvValues);
+            csv.append(line);
+        } else {
+            json.write(row);
+        }
+        written++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (csv != null) {
+            csv.flush();
+        } else {
+            json.close();
+            if (written > 0) {
+                target.write('\n');
+            }
+        }
+        if (gzip != null) {
+            gzip.finish();
+        }
+        target.flush();
+    }
+
+    private static class FastGzipOutputStream extends GZIPOutputStream {
+
+        FastGzipOutputStream(OutputStream outputStream) throws IOException {
+            super(outputStream, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.util;
+
+/**
+ * Состояния задания импорта
+ * QUEUED - файл принят и ждёт своей очереди
+ * RUNNING - файл читается и загружается частями, счётчики растут после каждой части
+ * COMPLETED - файл прочитан до конца, отклонённые строки доступны по заданию
+ * FAILED - загрузка остановлена ошибкой (текст в error), уже загруженные части остаются в БД
+ */
+public enum ImportJobStatus {
+    QUEUED, RUNNING, COMPLETED, FAILED
+}
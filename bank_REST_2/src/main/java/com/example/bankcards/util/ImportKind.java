@@ -0,0 +1,24 @@
+package com.example.bankcards.util;
+
+/**
+ * Что загружает задание импорта из CSV
+ * USERS - пользователи: first_name,second_name,middle_name,email,phone_number,password
+ * CARDS - карты: user_email,final_date,balance,status (владелец ищется по email)
+ */
+public enum ImportKind {
+    USERS("first_name", "second_name", "middle_name", "email", "phone_number", "password"),
+    CARDS("user_email", "final_date", "balance", "status");
+
+    private final String[] columns;
+
+    ImportKind(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Столбцы CSV в том порядке, в котором они должны идти в заголовке файла
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+}
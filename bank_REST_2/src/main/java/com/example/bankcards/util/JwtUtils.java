@@ -1,56 +1,135 @@
 package com.example.bankcards.util;
 
-import com.example.bankcards.entity.User;
 import com.example.bankcards.service.UserDetailsImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Выпуск и проверка JWT.
+ * Ключ и парсер собираются один раз при создании бина, {@link #parseClaims} проверяет подпись
+ * и срок один раз и возвращает claims. Проверенные токены кэшируются по SHA-256 от токена
+ * до своего exp, поэтому повторный запрос с тем же токеном обходится без HMAC и разбора JSON.
+ * security.token-cache-size=0 отключает кэш.
+ * Токен несёт id, email, ФИО, роли и версию токенов пользователя, поэтому запрос
+ * аутентифицируется по claims без обращения к БД (см. {@link #toUserDetails})
+ */
 @Component
 @Slf4j
 public class JwtUtils {
 
-    @Value("${security.token}")
-    private String jwtSecret;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String NAME_CLAIM = "name";
+    public static final String ROLES_CLAIM = "roles";
+    public static final String TOKEN_VERSION_CLAIM = "ver";
 
-    @Value("${security.expiration}")
-    private int jwtExpirationMs;
+    private final Key key;
+    private final JwtParser parser;
+    private final int jwtExpirationMs;
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtUtils(@Value("${security.token}") String jwtSecret,
+                    @Value("${security.expiration}") int jwtExpirationMs,
+                    @Value("${security.token-cache-size:10000}") long tokenCacheSize) {
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.verifiedTokens = tokenCacheSize > 0
+                ? Caffeine.newBuilder()
+                .maximumSize(tokenCacheSize)
+                .expireAfter(new UntilTokenExpires())
+                .build()
+                : null;
+    }
 
     public String generateJwtToken(Authentication authentication) {
 
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        return Jwts.builder().claim("roles", userDetails.getAuthorities())
+        List<String> roles = userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+
+        return Jwts.builder()
+                .claim(USER_ID_CLAIM, userDetails.getId())
+                .claim(NAME_CLAIM, userDetails.getUsername())
+                .claim(ROLES_CLAIM, roles)
+                .claim(TOKEN_VERSION_CLAIM, userDetails.getTokenVersion())
                 .setSubject(userDetails.getEmail())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    /**
+     * Проверяет подпись и срок действия токена и возвращает его claims,
+     * пустой Optional - если токен недействителен
+     */
+    public Optional<Claims> parseClaims(String token) {
+        if (verifiedTokens == null) {
+            return verify(token);
+        }
+
+        String digest = digest(token);
+        Claims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<Claims> claims = verify(token);
+        claims.ifPresent(verified -> verifiedTokens.put(digest, verified));
+        return claims;
     }
 
-    public String getUserEmailFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject();
+    /**
+     * Собирает пользователя из claims проверенного токена, без пароля и телефона.
+     * Пустой Optional для токенов, выданных до появления claim uid: их пользователь загружается из БД
+     */
+    public Optional<UserDetailsImpl> toUserDetails(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        if (userId == null) {
+            return Optional.empty();
+        }
+
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        List<GrantedAuthority> authorities = roles == null ? List.of() : roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.toString()))
+                .toList();
+        Long tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Long.class);
+
+        return Optional.of(new UserDetailsImpl(
+                userId,
+                claims.get(NAME_CLAIM, String.class),
+                claims.getSubject(),
+                null,
+                authorities,
+                null,
+                tokenVersion == null ? 0L : tokenVersion));
     }
 
-    public boolean validateJwtToken(String authToken) {
+    private Optional<Claims> verify(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key())
-                    .build()
-                    .parse(authToken);
-            return true;
+            return Optional.of(parser.parseClaimsJws(token).getBody());
         } catch (MalformedJwtException e) {
             log.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -59,7 +138,43 @@ public class JwtUtils {
             log.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             log.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            log.error("JWT signature is invalid: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Запись живёт до exp токена, токен без exp не кэшируется
+     */
+    private static class UntilTokenExpires implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String digest, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(digest, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String digest, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
-        return false;
     }
 }
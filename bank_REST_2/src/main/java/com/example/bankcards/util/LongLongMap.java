@@ -0,0 +1,165 @@
+package com.example.bankcards.util;
+
+import java.util.Arrays;
+
+/**
+ * Хэш-таблица long -> long с открытой адресацией и линейным пробированием.
+ * Хранит ключи и значения в примитивных массивах, без упаковки в Long.
+ * Не потокобезопасна: каждый экземпляр принадлежит одному потоку (шарду движка балансов)
+ */
+public final class LongLongMap {
+
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public LongLongMap() {
+        this(16);
+    }
+
+    public LongLongMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    public long get(long key, long defaultValue) {
+        int index = find(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(long key, long value) {
+        int index = find(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+        insert(-index - 1, key, value);
+    }
+
+    /**
+     * Прибавляет delta к значению ключа, отсутствующий ключ считается равным нулю
+     *
+     * @return новое значение
+     */
+    public long addTo(long key, long delta) {
+        int index = find(key);
+        if (index >= 0) {
+            values[index] += delta;
+            return values[index];
+        }
+        insert(-index - 1, key, delta);
+        return delta;
+    }
+
+    public boolean remove(long key) {
+        int hole = find(key);
+        if (hole < 0) {
+            return false;
+        }
+        used[hole] = false;
+        size--;
+
+        // Сдвигаем следующие элементы цепочки назад, чтобы поиск не обрывался на освободившейся ячейке
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            if (!used[index]) {
+                return true;
+            }
+            int home = slot(keys[index]);
+            boolean homeBetweenHoleAndIndex = hole <= index
+                    ? hole < home && home <= index
+                    : hole < home || home <= index;
+            if (!homeBetweenHoleAndIndex) {
+                keys[hole] = keys[index];
+                values[hole] = values[index];
+                used[hole] = true;
+                used[index] = false;
+                hole = index;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int find(long key) {
+        int index = slot(key);
+        while (used[index]) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -index - 1;
+    }
+
+    private void insert(int index, long key, long value) {
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * PHI;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+}
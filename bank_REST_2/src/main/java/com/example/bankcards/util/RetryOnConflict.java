@@ -0,0 +1,19 @@
+package com.example.bankcards.util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Помечает метод, который нужно повторить при конфликте параллельного изменения данных
+ * (оптимистическая блокировка или ошибка сериализации PostgreSQL)
+ *
+ * @see ConflictRetryAspect
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.util;
+
+/**
+ * Режим обработки пакета переводов
+ * ALL_OR_NOTHING - при ошибке хотя бы в одном переводе не применяется ни один
+ * BEST_EFFORT - применяются все корректные переводы, ошибочные пропускаются
+ */
+public enum TransferBatchMode {
+    ALL_OR_NOTHING, BEST_EFFORT
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.util;
+
+/**
+ * Режимы выполнения перевода между картами, выбираются свойством transfer.mode
+ * LOCKING - карты загружаются с блокировкой строк и изменяются через сущности
+ * CONDITIONAL - списание и зачисление выполняются условными UPDATE без загрузки сущностей
+ * SHARDED - балансы хранятся в памяти шардов, журнал пишется в БД группами (ShardedBalanceEngine)
+ * GROUP_COMMIT - переводы, пришедшие в одно короткое окно, применяются одной транзакцией (GroupCommitTransferPipeline)
+ */
+public enum TransferMode {
+    LOCKING, CONDITIONAL, SHARDED, GROUP_COMMIT
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.util;
+
+/**
+ * Результат отдельного перевода в пакете
+ * APPLIED - перевод выполнен
+ * REJECTED - перевод отклонён проверками
+ * ROLLED_BACK - перевод корректен, но отменён вместе со всем пакетом
+ */
+public enum TransferResultStatus {
+    APPLIED, REJECTED, ROLLED_BACK
+}
@@ -0,0 +1,195 @@
+package com.example.bankcards.perf;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.TokenVersionRegistry;
+import com.example.bankcards.service.UserDetailsFactory;
+import com.example.bankcards.service.UserDetailsService;
+import com.example.bankcards.util.AuthTokenFilter;
+import com.example.bankcards.util.JwtUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Нагрузочный тест AuthTokenFilter с кэшем версий токенов и без него.
+ * Токены текущего формата: пользователь берётся из claims, единственное обращение к БД на запрос -
+ * проверка версии токена в TokenVersionRegistry, которая и сравнивается с кэшем и без него.
+ * Запросы идут по графику perf.auth-rps в секунду (открытая модель):
+ * perf.workers потоков берут следующий запрос и ждут его запланированного момента,
+ * задержка отсчитывается от этого момента. Отчёт пишется в JSON (perf.output-dir)
+ */
+@Slf4j
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class})
+@ActiveProfiles("test")
+public class AuthFilterBenchmark implements PostgreSQLContainerInitializer {
+
+    private static final int USERS = Integer.getInteger("perf.auth-users", 1_000);
+    private static final int RPS = Integer.getInteger("perf.auth-rps", 1_000);
+    private static final int REQUESTS = Integer.getInteger("perf.auth-requests", 30_000);
+    private static final int WORKERS = Integer.getInteger("perf.workers", 16);
+    private static final String LABEL = System.getProperty("perf.label", "");
+    private static final Path OUTPUT_DIR = Path.of(System.getProperty("perf.output-dir", "build/perf"));
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private UserDetailsFactory userDetailsFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private AuthService authService;
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 100_000})
+    void authenticate(long tokenVersionCacheSize) throws Exception {
+        List<String> tokens = seed();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TokenVersionRegistry tokenVersionRegistry = new TokenVersionRegistry(usersRepository, meterRegistry,
+                tokenVersionCacheSize, Duration.ofSeconds(30));
+        UserDetailsService userDetailsService = new UserDetailsService(usersRepository, userDetailsFactory,
+                transactionManager);
+        AuthTokenFilter filter = new AuthTokenFilter(jwtUtils, userDetailsService, tokenVersionRegistry);
+
+        long[] latencies = new long[REQUESTS];
+        AtomicLong unauthenticated = new AtomicLong();
+        AtomicInteger next = new AtomicInteger();
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / RPS;
+
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        List<Future<?>> futures = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        for (int w = 0; w < WORKERS; w++) {
+            int worker = w;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(worker);
+                for (int i = next.getAndIncrement(); i < REQUESTS; i = next.getAndIncrement()) {
+                    long scheduledAt = startedAt + i * periodNanos;
+                    long wait = scheduledAt - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+
+                    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/cards/");
+                    request.addHeader("Authorization", "Bearer " + tokens.get(random.nextInt(tokens.size())));
+                    try {
+                        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+                            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                                unauthenticated.incrementAndGet();
+                            }
+                        });
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                    latencies[i] = System.nanoTime() - scheduledAt;
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        AuthFilterReport report = new AuthFilterReport(
+                LABEL,
+                tokenVersionCacheSize,
+                USERS,
+                RPS,
+                REQUESTS,
+                elapsedNanos / 1_000_000,
+                REQUESTS / (elapsedNanos / 1_000_000_000.0),
+                BenchmarkReport.Latency.of(latencies),
+                unauthenticated.get(),
+                hitRate(meterRegistry));
+        write(report);
+    }
+
+    /**
+     * Засевает пользователей с ролью ROLE_USER и выпускает каждому токен текущего формата
+     */
+    private List<String> seed() {
+        jdbcTemplate.update("DELETE FROM cards");
+        jdbcTemplate.update("DELETE FROM user_roles");
+        jdbcTemplate.update("DELETE FROM users");
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO users (first_name, second_name, middle_name, email, phone_number, password) VALUES (?, ?, ?, ?, ?, ?)",
+                IntStream.range(0, USERS)
+                        .mapToObj(i -> new Object[]{"Perf", "Perf", "Perf", "auth-" + i + "@bench.local",
+                                String.format("+7900%07d", i), "securepassword113"})
+                        .toList());
+        jdbcTemplate.update("INSERT INTO user_roles (user_id, role_id) "
+                + "SELECT u.id, r.id FROM users u CROSS JOIN roles r WHERE r.name = 'ROLE_USER'");
+
+        // Роли пользователя загружаются лениво, поэтому UserDetails собираются в транзакции
+        return new TransactionTemplate(transactionManager).execute(status -> usersRepository.findAll().stream()
+                .map(user -> jwtUtils.generateJwtToken(
+                        new UsernamePasswordAuthenticationToken(userDetailsFactory.build(user), null, List.of())))
+                .toList());
+    }
+
+    private double hitRate(SimpleMeterRegistry meterRegistry) {
+        double hits = meterRegistry.find("cache.gets").tag("result", "hit").functionCounters().stream()
+                .mapToDouble(FunctionCounter::count).sum();
+        double misses = meterRegistry.find("cache.gets").tag("result", "miss").functionCounters().stream()
+                .mapToDouble(FunctionCounter::count).sum();
+        return hits + misses == 0 ? 0 : hits / (hits + misses);
+    }
+
+    private void write(AuthFilterReport report) throws IOException {
+        Files.createDirectories(OUTPUT_DIR);
+        Path file = OUTPUT_DIR.resolve("auth-filter-token-version-cache" + report.tokenVersionCacheSize() + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        log.info("Отчёт {}: {}", file, objectMapper.writeValueAsString(report));
+    }
+}
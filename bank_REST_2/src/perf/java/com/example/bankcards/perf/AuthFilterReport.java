@@ -0,0 +1,17 @@
+package com.example.bankcards.perf;
+
+/**
+ * Результат прогона AuthFilterBenchmark: задержка AuthTokenFilter при заданной частоте запросов.
+ * Задержка считается от запланированного момента запроса, поэтому отставание от графика тоже в неё попадает
+ */
+record AuthFilterReport(String label,
+                        long tokenVersionCacheSize,
+                        int users,
+                        int targetRps,
+                        int requests,
+                        long durationMs,
+                        double achievedRps,
+                        BenchmarkReport.Latency latencyMs,
+                        long unauthenticated,
+                        double cacheHitRate) {
+}
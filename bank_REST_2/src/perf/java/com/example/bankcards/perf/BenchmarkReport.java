@@ -0,0 +1,48 @@
+package com.example.bankcards.perf;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Результат одного прогона нагрузки, сохраняется в JSON для сравнения между коммитами.
+ * aborted - переводы, завершившиеся технической ошибкой (конфликт после всех повторов, таймаут и т.д.),
+ * rejected - бизнес-отказы (недостаточно средств), retries и giveups - счётчики card.operation.* за прогон
+ */
+record BenchmarkReport(String label,
+                       String pattern,
+                       String transferMode,
+                       int users,
+                       int cardsPerUser,
+                       int workers,
+                       int transfers,
+                       long durationMs,
+                       double throughputPerSecond,
+                       Latency latencyMs,
+                       long rejected,
+                       long aborted,
+                       double abortRate,
+                       double retries,
+                       double retryRate,
+                       double giveups,
+                       Map<String, Long> failuresByType) {
+
+    record Latency(double p50, double p99, double p999, double max) {
+
+        /**
+         * Перцентили по массиву задержек в наносекундах, массив сортируется на месте
+         */
+        static Latency of(long[] nanos) {
+            Arrays.sort(nanos);
+            return new Latency(percentile(nanos, 0.50), percentile(nanos, 0.99), percentile(nanos, 0.999),
+                    nanos.length == 0 ? 0 : nanos[nanos.length - 1] / 1_000_000.0);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+        }
+    }
+}
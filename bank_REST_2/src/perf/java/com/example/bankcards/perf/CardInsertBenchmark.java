@@ -0,0 +1,134 @@
+package com.example.bankcards.perf;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.util.Status;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Нагрузочный тест вставки perf.insert-cards карт (по умолчанию 100 тысяч) транзакциями по perf.insert-chunk.
+ * ROW_BY_ROW воспроизводит поведение Hibernate с GenerationType.IDENTITY: каждый INSERT ... RETURNING id
+ * выполняется отдельным запросом. JPA_BATCHED сохраняет сущности Card с ключами из cards_seq (pooled-lo),
+ * Hibernate собирает INSERT в JDBC-пакеты по hibernate.jdbc.batch_size. Отчёт пишется в JSON (perf.output-dir)
+ */
+@Slf4j
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class})
+@ActiveProfiles("test")
+public class CardInsertBenchmark implements PostgreSQLContainerInitializer {
+
+    private static final int CARDS = Integer.getInteger("perf.insert-cards", 100_000);
+    private static final int CHUNK = Integer.getInteger("perf.insert-chunk", 1_000);
+    private static final String MODE = System.getProperty("perf.insert-mode", "");
+    private static final String LABEL = System.getProperty("perf.label", "");
+    private static final Path OUTPUT_DIR = Path.of(System.getProperty("perf.output-dir", "build/perf"));
+
+    enum InsertMode {ROW_BY_ROW, JPA_BATCHED}
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private AuthService authService;
+
+    @ParameterizedTest
+    @EnumSource(InsertMode.class)
+    void insertCards(InsertMode mode) throws IOException {
+        assumeTrue(MODE.isEmpty() || MODE.equalsIgnoreCase(mode.name()), "Режим отключён perf.insert-mode");
+
+        jdbcTemplate.update("DELETE FROM cards");
+        jdbcTemplate.update("DELETE FROM user_roles");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (first_name, second_name, middle_name, email, phone_number, password) "
+                + "VALUES ('Perf', 'Perf', 'Perf', 'insert@bench.local', '+79000000000', 'securepassword113')");
+        long userId = jdbcTemplate.queryForObject("SELECT id FROM users", Long.class);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDate finalDate = LocalDate.now().plusYears(3);
+
+        long startedAt = System.nanoTime();
+        for (int from = 0; from < CARDS; from += CHUNK) {
+            int size = Math.min(CHUNK, CARDS - from);
+            transaction.executeWithoutResult(status -> {
+                if (mode == InsertMode.ROW_BY_ROW) {
+                    insertRowByRow(userId, finalDate, size);
+                } else {
+                    insertBatched(userId, finalDate, size);
+                }
+            });
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+
+        CardInsertReport report = new CardInsertReport(
+                LABEL,
+                mode.name(),
+                CARDS,
+                CHUNK,
+                elapsedNanos / 1_000_000,
+                CARDS / (elapsedNanos / 1_000_000_000.0));
+        write(report);
+    }
+
+    private void insertRowByRow(long userId, LocalDate finalDate, int size) {
+        for (int i = 0; i < size; i++) {
+            jdbcTemplate.queryForObject(
+                    "INSERT INTO cards (final_date, status, balance, user_id, version) VALUES (?, ?, ?, ?, 0) RETURNING id",
+                    Long.class, Date.valueOf(finalDate), Status.ACTIVE.name(), 1_000L, userId);
+        }
+    }
+
+    private void insertBatched(long userId, LocalDate finalDate, int size) {
+        User owner = entityManager.getReference(User.class, userId);
+        for (int i = 0; i < size; i++) {
+            Card card = new Card();
+            card.setFinalDate(finalDate);
+            card.setStatus(Status.ACTIVE);
+            card.setBalance(1_000L);
+            card.setUser(owner);
+            entityManager.persist(card);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void write(CardInsertReport report) throws IOException {
+        Files.createDirectories(OUTPUT_DIR);
+        Path file = OUTPUT_DIR.resolve("card-insert-" + report.mode().toLowerCase() + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        log.info("Отчёт {}: {}", file, objectMapper.writeValueAsString(report));
+    }
+}
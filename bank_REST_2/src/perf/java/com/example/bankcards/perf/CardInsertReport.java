@@ -0,0 +1,12 @@
+package com.example.bankcards.perf;
+
+/**
+ * Результат прогона CardInsertBenchmark: время вставки cards карт пакетами по chunkSize в транзакции
+ */
+record CardInsertReport(String label,
+                        String mode,
+                        int cards,
+                        int chunkSize,
+                        long durationMs,
+                        double rowsPerSecond) {
+}
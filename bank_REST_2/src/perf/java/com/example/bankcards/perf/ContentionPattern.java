@@ -0,0 +1,38 @@
+package com.example.bankcards.perf;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Как нагрузка выбирает карты для перевода.
+ * UNIFORM - случайный пользователь и две его случайные карты, конфликтов почти нет
+ * ZIPF - карта отправителя выбирается по закону Ципфа, несколько горячих карт получают большую часть переводов
+ * SAME_USER - все переводы между картами одного пользователя, максимальная конкуренция за строки
+ */
+public enum ContentionPattern {
+
+    UNIFORM {
+        @Override
+        TransferPick pick(SeededData data, RandomGenerator random) {
+            int user = random.nextInt(data.users());
+            return data.pickWithin(user, random);
+        }
+    },
+    ZIPF {
+        @Override
+        TransferPick pick(SeededData data, RandomGenerator random) {
+            int card = data.zipf().sample(random);
+            return data.pickFrom(card, random);
+        }
+    },
+    SAME_USER {
+        @Override
+        TransferPick pick(SeededData data, RandomGenerator random) {
+            return data.pickWithin(0, random);
+        }
+    };
+
+    abstract TransferPick pick(SeededData data, RandomGenerator random);
+
+    record TransferPick(long userId, long fromCardId, long toCardId) {
+    }
+}
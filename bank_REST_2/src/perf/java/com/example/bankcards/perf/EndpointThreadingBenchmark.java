@@ -0,0 +1,204 @@
+package com.example.bankcards.perf;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.UserDetailsFactory;
+import com.example.bankcards.util.JwtUtils;
+import com.example.bankcards.util.Status;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Нагрузка на эндпоинты перевода и поиска через настоящий HTTP с JWT.
+ * Наследники запускают приложение с платформенными и с виртуальными потоками (профиль virtual),
+ * сравнение результатов в логе: запросов в секунду, p50 и p99.
+ * Число клиентов и запросов на клиента задаются через perf.endpoint-clients и perf.endpoint-requests.
+ * Ошибкой считается и ответ 200 с ErrorDTO: общий обработчик исключений отвечает так на любую RuntimeException
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = BankRestApplication.class)
+abstract class EndpointThreadingBenchmark implements PostgreSQLContainerInitializer {
+
+    private static final int CLIENTS = Integer.getInteger("perf.endpoint-clients", 400);
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("perf.endpoint-requests", 25);
+    private static final int CARDS = 20;
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserDetailsFactory userDetailsFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+
+    private String token;
+
+    private Long userId;
+
+    private List<Long> cardIds;
+
+    protected abstract String label();
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012396");
+        user.setEmail("benchmark@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user.setRole(new HashSet<>());
+        user = usersRepository.save(user);
+        userId = user.getId();
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setStatus(Status.ACTIVE);
+            card.setUser(user);
+            card.setBalance(INITIAL_BALANCE);
+            card.setFinalDate(LocalDate.now().plusYears(3));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+
+        token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(userDetailsFactory.build(user), null, List.of()));
+    }
+
+    @Test
+    void transferEndpoint() throws Exception {
+        Result result = run(request -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int from = random.nextInt(CARDS);
+            int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+            String body = "{\"fromCardId\":" + cardIds.get(from) + ",\"toCardId\":" + cardIds.get(to)
+                    + ",\"amount\":" + random.nextLong(1, 100) + "}";
+            return authorized("/cards/transfer")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        });
+        log.info("{} POST /cards/transfer: {}", label(), result);
+
+        assertEquals(0, result.errors());
+        assertEquals(INITIAL_BALANCE * CARDS, cardRepository.findAllById(cardIds).stream()
+                .mapToLong(Card::getBalance)
+                .sum());
+    }
+
+    @Test
+    void searchEndpoint() throws Exception {
+        Result result = run(request -> authorized("/cards/search?user_id=" + userId + "&size=20")
+                .GET()
+                .build());
+        log.info("{} GET /cards/search: {}", label(), result);
+
+        assertEquals(0, result.errors());
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private Result run(IntFunction<HttpRequest> requests) throws Exception {
+        long[] latencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+        AtomicInteger errors = new AtomicInteger();
+
+        long startedAt = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                int client = c;
+                futures.add(clients.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        int index = client * REQUESTS_PER_CLIENT + i;
+                        long requestStartedAt = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = httpClient.send(requests.apply(index),
+                                    HttpResponse.BodyHandlers.ofString());
+                            if (isError(response)) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[index] = System.nanoTime() - requestStartedAt;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+
+        Arrays.sort(latencies);
+        return new Result(
+                Math.round(latencies.length / (elapsedNanos / 1_000_000_000.0)),
+                latencies[latencies.length / 2] / 1_000_000.0,
+                latencies[(int) (latencies.length * 0.99)] / 1_000_000.0,
+                errors.get());
+    }
+
+    /**
+     * Поле number есть и у страницы Page, поэтому ErrorDTO узнаётся по паре message и number
+     */
+    private boolean isError(HttpResponse<String> response) throws JsonProcessingException {
+        JsonNode body = objectMapper.readTree(response.body());
+        return response.statusCode() != 200 || body.has("message") && body.has("number");
+    }
+
+    private record Result(long perSecond, double p50Ms, double p99Ms, int errors) {
+    }
+}
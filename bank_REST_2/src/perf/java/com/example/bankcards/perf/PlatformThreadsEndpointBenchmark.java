@@ -0,0 +1,12 @@
+package com.example.bankcards.perf;
+
+/**
+ * Базовая линия: запросы обслуживает пул платформенных потоков Tomcat
+ */
+public class PlatformThreadsEndpointBenchmark extends EndpointThreadingBenchmark {
+
+    @Override
+    protected String label() {
+        return "Платформенные потоки";
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bankcards.perf;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Засеянные для нагрузки пользователи и карты.
+ * cardIds[i] принадлежит userIds[cardOwner[i]], карты одного пользователя идут подряд по cardsPerUser штук
+ */
+record SeededData(long[] userIds, long[] cardIds, int[] cardOwner, int cardsPerUser, ZipfSampler zipf) {
+
+    int users() {
+        return userIds.length;
+    }
+
+    /**
+     * Две разные случайные карты пользователя
+     */
+    ContentionPattern.TransferPick pickWithin(int user, RandomGenerator random) {
+        int first = user * cardsPerUser;
+        int from = random.nextInt(cardsPerUser);
+        int to = (from + 1 + random.nextInt(cardsPerUser - 1)) % cardsPerUser;
+        return new ContentionPattern.TransferPick(userIds[user], cardIds[first + from], cardIds[first + to]);
+    }
+
+    /**
+     * Перевод с заданной карты на другую случайную карту того же пользователя
+     */
+    ContentionPattern.TransferPick pickFrom(int card, RandomGenerator random) {
+        int user = cardOwner[card];
+        int first = user * cardsPerUser;
+        int from = card - first;
+        int to = (from + 1 + random.nextInt(cardsPerUser - 1)) % cardsPerUser;
+        return new ContentionPattern.TransferPick(userIds[user], cardIds[card], cardIds[first + to]);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.bankcards.perf;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.UserDetailsImpl;
+import com.example.bankcards.util.Status;
+import com.example.bankcards.util.TransferMode;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнение движка SHARDED с блокирующим путём JPA на одном наборе карт.
+ * Проверяется, что сумма балансов не меняется, и выводится число переводов в секунду для обоих режимов.
+ * Число потоков и переводов на поток задаются через perf.sharded-threads и perf.sharded-transfers
+ */
+@Slf4j
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class},
+        properties = "transfer.mode=SHARDED")
+@ActiveProfiles("test")
+public class ShardedBalanceEngineBenchmark implements PostgreSQLContainerInitializer {
+
+    private static final int CARDS = 10;
+    private static final int THREADS = Integer.getInteger("perf.sharded-threads", 16);
+    private static final int TRANSFERS_PER_THREAD = Integer.getInteger("perf.sharded-transfers", 250);
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private UserDetailsImpl userDetails;
+
+    private List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012398");
+        user.setEmail("sharded@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user = usersRepository.save(user);
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setStatus(Status.ACTIVE);
+            card.setUser(user);
+            card.setBalance(INITIAL_BALANCE);
+            card.setFinalDate(LocalDate.now().plusYears(3));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+
+        userDetails = new UserDetailsImpl(user.getId(), "Павел", user.getEmail(), user.getPassword(),
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), user.getPhoneNumber());
+    }
+
+    @AfterEach
+    void tearDown() {
+        setMode(TransferMode.SHARDED);
+        cardIds.forEach(cardService::deleteCard);
+    }
+
+    @Test
+    void shardedAndLockingTransfer_ShouldKeepTotalBalance() throws InterruptedException {
+        setMode(TransferMode.LOCKING);
+        long locking = run();
+        assertEquals(INITIAL_BALANCE * CARDS, totalBalance());
+
+        setMode(TransferMode.SHARDED);
+        long sharded = run();
+        assertEquals(INITIAL_BALANCE * CARDS, totalBalance());
+
+        log.info("Переводов/с: LOCKING {}, SHARDED {}", locking, sharded);
+    }
+
+    private long run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = random.nextInt(CARDS);
+                        int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                        try {
+                            cardService.transfer(new TransactionDTO(cardIds.get(from), cardIds.get(to),
+                                    random.nextLong(1, 100)), userDetails);
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        assertEquals(0, failures.get());
+        return Math.round(THREADS * TRANSFERS_PER_THREAD / (elapsedNanos / 1_000_000_000.0));
+    }
+
+    private void setMode(TransferMode mode) {
+        ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(cardService), "transferMode", mode);
+    }
+
+    private long totalBalance() {
+        return cardRepository.findAllById(cardIds).stream()
+                .mapToLong(Card::getBalance)
+                .sum();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.bankcards.perf;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.exception.NegativeBalanceException;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.UserDetailsImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Нагрузочный тест CardService.transfer на Postgres из Testcontainers.
+ * Засевает perf.users пользователей по perf.cards-per-user карт, затем perf.workers потоков выполняют
+ * perf.transfers переводов по выбранной схеме конкуренции. Отчёт с пропускной способностью, перцентилями задержки
+ * и долей отказов и повторов пишется в JSON (perf.output-dir), чтобы сравнивать прогоны между коммитами.
+ * perf.pattern ограничивает запуск одной схемой, режим перевода задаётся через -Dtransfer.mode
+ */
+@Slf4j
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class})
+@ActiveProfiles("test")
+public class TransferBenchmark implements PostgreSQLContainerInitializer {
+
+    private static final int USERS = Integer.getInteger("perf.users", 100);
+    private static final int CARDS_PER_USER = Integer.getInteger("perf.cards-per-user", 10);
+    private static final int WORKERS = Integer.getInteger("perf.workers", 16);
+    private static final int TRANSFERS = Integer.getInteger("perf.transfers", 20_000);
+    private static final int WARMUP = Integer.getInteger("perf.warmup", 1_000);
+    private static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("perf.zipf-exponent", "1.1"));
+    private static final String PATTERN = System.getProperty("perf.pattern", "");
+    private static final String LABEL = System.getProperty("perf.label", "");
+    private static final Path OUTPUT_DIR = Path.of(System.getProperty("perf.output-dir", "build/perf"));
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @MockitoBean
+    private AuthService authService;
+
+    @ParameterizedTest
+    @EnumSource(ContentionPattern.class)
+    void transfer(ContentionPattern pattern) throws Exception {
+        assumeTrue(PATTERN.isEmpty() || PATTERN.equalsIgnoreCase(pattern.name()), "Схема отключена perf.pattern");
+
+        SeededData data = seed();
+        run(pattern, data, WARMUP, new long[WARMUP], new AtomicLong(), new AtomicLong(), new ConcurrentHashMap<>());
+
+        double retriesBefore = count("card.operation.retries");
+        double giveupsBefore = count("card.operation.giveups");
+        long[] latencies = new long[TRANSFERS];
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong aborted = new AtomicLong();
+        Map<String, Long> failures = new ConcurrentHashMap<>();
+
+        long elapsedNanos = run(pattern, data, TRANSFERS, latencies, rejected, aborted, failures);
+
+        double retries = count("card.operation.retries") - retriesBefore;
+        BenchmarkReport report = new BenchmarkReport(
+                LABEL,
+                pattern.name(),
+                environment.getProperty("transfer.mode", "LOCKING"),
+                USERS,
+                CARDS_PER_USER,
+                WORKERS,
+                TRANSFERS,
+                elapsedNanos / 1_000_000,
+                TRANSFERS / (elapsedNanos / 1_000_000_000.0),
+                BenchmarkReport.Latency.of(latencies),
+                rejected.get(),
+                aborted.get(),
+                (double) aborted.get() / TRANSFERS,
+                retries,
+                retries / TRANSFERS,
+                count("card.operation.giveups") - giveupsBefore,
+                new TreeMap<>(failures));
+        write(report);
+    }
+
+    private long run(ContentionPattern pattern, SeededData data, int transfers, long[] latencies,
+                     AtomicLong rejected, AtomicLong aborted, Map<String, Long> failures) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        List<Future<?>> futures = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        for (int w = 0; w < WORKERS; w++) {
+            int worker = w;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(31L * worker + transfers);
+                for (int i = worker; i < transfers; i += WORKERS) {
+                    ContentionPattern.TransferPick pick = pattern.pick(data, random);
+                    TransactionDTO transfer = new TransactionDTO(pick.fromCardId(), pick.toCardId(), random.nextLong(1, 1_000));
+                    long requestStartedAt = System.nanoTime();
+                    try {
+                        cardService.transfer(transfer, userDetails(pick.userId()));
+                    } catch (NegativeBalanceException e) {
+                        rejected.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        aborted.incrementAndGet();
+                        failures.merge(e.getClass().getSimpleName(), 1L, Long::sum);
+                    }
+                    latencies[i] = System.nanoTime() - requestStartedAt;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+        return elapsedNanos;
+    }
+
+    /**
+     * Засевает пользователей и карты пакетными вставками, карты одного пользователя получают соседние индексы
+     */
+    private SeededData seed() {
+        jdbcTemplate.update("DELETE FROM cards");
+        jdbcTemplate.update("DELETE FROM user_roles");
+        jdbcTemplate.update("DELETE FROM users");
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO users (first_name, second_name, middle_name, email, phone_number, password) VALUES (?, ?, ?, ?, ?, ?)",
+                IntStream.range(0, USERS)
+                        .mapToObj(i -> new Object[]{"Perf", "Perf", "Perf", "perf-" + i + "@bench.local",
+                                String.format("+7900%07d", i), "securepassword113"})
+                        .toList());
+        long[] userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+
+        Date finalDate = Date.valueOf(LocalDate.now().plusYears(3));
+        List<Object[]> cards = new ArrayList<>(USERS * CARDS_PER_USER);
+        for (long userId : userIds) {
+            for (int c = 0; c < CARDS_PER_USER; c++) {
+                cards.add(new Object[]{finalDate, "ACTIVE", INITIAL_BALANCE, userId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cards (final_date, status, balance, user_id) VALUES (?, ?, ?, ?)", cards);
+
+        List<long[]> rows = jdbcTemplate.query("SELECT id, user_id FROM cards ORDER BY user_id, id",
+                (rs, rowNum) -> new long[]{rs.getLong("id"), rs.getLong("user_id")});
+        long[] cardIds = new long[rows.size()];
+        int[] cardOwner = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            cardIds[i] = rows.get(i)[0];
+            cardOwner[i] = i / CARDS_PER_USER;
+        }
+        return new SeededData(userIds, cardIds, cardOwner, CARDS_PER_USER, new ZipfSampler(cardIds.length, ZIPF_EXPONENT));
+    }
+
+    private UserDetailsImpl userDetails(long userId) {
+        return new UserDetailsImpl(userId, "Perf", "perf@bench.local", "", List.of(), "");
+    }
+
+    private double count(String name) {
+        return meterRegistry.find(name).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private void write(BenchmarkReport report) throws IOException {
+        Files.createDirectories(OUTPUT_DIR);
+        Path file = OUTPUT_DIR.resolve("transfer-" + report.pattern().toLowerCase() + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        log.info("Отчёт {}: {}", file, objectMapper.writeValueAsString(report));
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.perf;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Профиль virtual: запросы на виртуальных потоках, доступ к пулу Hikari через семафор
+ */
+@ActiveProfiles("virtual")
+public class VirtualThreadsEndpointBenchmark extends EndpointThreadingBenchmark {
+
+    @Override
+    protected String label() {
+        return "Виртуальные потоки";
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.perf;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Выборка индекса 0..n-1 по закону Ципфа с показателем s: P(k) пропорциональна 1 / (k + 1)^s.
+ * Индекс 0 самый частый
+ */
+final class ZipfSampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int sample(RandomGenerator random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
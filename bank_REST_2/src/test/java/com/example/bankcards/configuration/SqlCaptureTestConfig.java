@@ -0,0 +1,113 @@
+package com.example.bankcards.configuration;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Перехват SQL, который приложение отправляет в БД через DataSource (Hibernate, Spring Data, JdbcTemplate).
+ * Запоминаются текст подготовленного запроса и значения его параметров, только в потоке, вызвавшем {@link #capture}
+ */
+@TestConfiguration
+public class SqlCaptureTestConfig {
+
+    private static final ThreadLocal<List<CapturedSql>> CAPTURED = new ThreadLocal<>();
+
+    @Bean
+    public static BeanPostProcessor sqlCapturePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof CapturingDataSource)
+                        ? new CapturingDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+
+    /**
+     * Выполняет action и возвращает выполненные им запросы в порядке выполнения
+     */
+    public static List<CapturedSql> capture(Runnable action) {
+        List<CapturedSql> captured = new ArrayList<>();
+        CAPTURED.set(captured);
+        try {
+            action.run();
+        } finally {
+            CAPTURED.remove();
+        }
+        return captured;
+    }
+
+    public record CapturedSql(String sql, List<Object> args) {
+    }
+
+    private static final class CapturingDataSource extends DelegatingDataSource {
+
+        private CapturingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return capturing(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return capturing(super.getConnection(username, password));
+        }
+
+        private static Connection capturing(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (method.getName().equals("prepareStatement") && args[0] instanceof String sql) {
+                            return capturing((PreparedStatement) result, sql);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement capturing(PreparedStatement statement, String sql) {
+            Map<Integer, Object> params = new TreeMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                            params.put(index, name.equals("setNull") ? null : args[1]);
+                        } else if (name.equals("clearParameters")) {
+                            params.clear();
+                        } else if ((args == null || args.length == 0) && (name.startsWith("execute") || name.equals("addBatch"))) {
+                            List<CapturedSql> captured = CAPTURED.get();
+                            if (captured != null) {
+                                captured.add(new CapturedSql(sql, new ArrayList<>(params.values())));
+                            }
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -37,6 +37,8 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
@@ -210,6 +212,49 @@ public class CardControllerTest implements PostgreSQLContainerInitializer {
                 );
     }
 
+    @Test
+    public void testTransferWithTooLongIdempotencyKey_ShouldReturnBadRequest() throws Exception {
+        String requestBody = "{\"fromCardId\": 1, \"toCardId\": 2, \"amount\": 1000}";
+
+        mockMvc.perform(
+                        post("/cards/transfer").contentType(MediaType.APPLICATION_JSON)
+                                .header("Idempotency-Key", "k".repeat(256))
+                                .content(requestBody)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.number").value(400));
+    }
+
+    @Test
+    public void testSearchKeysetWithTamperedCursor_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(
+                        get("/cards/search").param("mode", "keyset").param("status", "ACTIVE")
+                                .param("cursor", "djF8SUR8ZGVzY3xudWxsfGFiYw")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.number").value(400));
+    }
+
+    @Test
+    public void testSearchKeysetWithUnknownStatus_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(
+                        get("/cards/search").param("mode", "keyset").param("status", "LOST")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.number").value(400));
+    }
+
+    @Test
+    public void testExportWithUnknownStatus_ShouldReturnBadRequestBeforeStreaming() throws Exception {
+        mockMvc.perform(
+                        get("/cards/export").param("status", "foo").header("Accept-Encoding", "gzip")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("Content-Disposition"))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.number").value(400));
+    }
+
     private Card makeACardForTests() {
         Card card = new Card();
         User user = makeACardUserForTests();
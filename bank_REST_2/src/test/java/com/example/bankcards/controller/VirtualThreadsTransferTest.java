@@ -0,0 +1,151 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.UserDetailsFactory;
+import com.example.bankcards.util.AdmissionControlledDataSource;
+import com.example.bankcards.util.JwtUtils;
+import com.example.bankcards.util.Status;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Профиль virtual: переводы через HTTP на виртуальных потоках проходят через ограничитель доступа к пулу
+ * и не меняют сумму балансов. Замеры производительности - в perf (EndpointThreadingBenchmark)
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = BankRestApplication.class)
+@ActiveProfiles("virtual")
+public class VirtualThreadsTransferTest implements PostgreSQLContainerInitializer {
+
+    private static final int CLIENTS = 8;
+    private static final int REQUESTS_PER_CLIENT = 5;
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserDetailsFactory userDetailsFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+
+    private String token;
+
+    private List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012396");
+        user.setEmail("virtual@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user.setRole(new HashSet<>());
+        user = usersRepository.save(user);
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Card card = new Card();
+            card.setStatus(Status.ACTIVE);
+            card.setUser(user);
+            card.setBalance(INITIAL_BALANCE);
+            card.setFinalDate(LocalDate.now().plusYears(3));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+
+        token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(userDetailsFactory.build(user), null, List.of()));
+    }
+
+    @Test
+    void concurrentTransfers_ShouldSucceedAndKeepTotalBalance() throws Exception {
+        assertInstanceOf(AdmissionControlledDataSource.class, dataSource);
+
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<HttpResponse<String>>>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                // Встречные переводы, чтобы клиенты ждали друг друга на блокировках карт
+                long from = cardIds.get(c % 2);
+                long to = cardIds.get((c + 1) % 2);
+                futures.add(clients.submit(() -> {
+                    List<HttpResponse<String>> sent = new ArrayList<>();
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        sent.add(transfer(from, to));
+                    }
+                    return sent;
+                }));
+            }
+            for (Future<List<HttpResponse<String>>> future : futures) {
+                responses.addAll(future.get());
+            }
+        }
+
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, responses.size());
+        for (HttpResponse<String> response : responses) {
+            // Общий обработчик исключений отвечает 200 с ErrorDTO, успешный ответ - тело перевода
+            assertEquals(200, response.statusCode(), response.body());
+            assertTrue(objectMapper.readTree(response.body()).has("fromCardId"), response.body());
+        }
+        assertEquals(INITIAL_BALANCE * 2, cardRepository.findAllById(cardIds).stream()
+                .mapToLong(Card::getBalance)
+                .sum());
+    }
+
+    private HttpResponse<String> transfer(long from, long to) throws Exception {
+        String body = "{\"fromCardId\":" + from + ",\"toCardId\":" + to + ",\"amount\":10}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cards/transfer"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
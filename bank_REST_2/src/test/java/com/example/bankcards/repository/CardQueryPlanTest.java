@@ -0,0 +1,209 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.configuration.SqlCaptureTestConfig;
+import com.example.bankcards.configuration.SqlCaptureTestConfig.CapturedSql;
+import com.example.bankcards.dto.CardSearchPageDTO;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardExpirySweeper;
+import com.example.bankcards.service.CardListingService;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardSortKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка планов запросов к cards на большой таблице: ни один запрос репозиториев и поиска
+ * не должен читать cards последовательным сканированием.
+ * SQL не пишется вручную: тест вызывает CardRepository, CardService.search, CardListingService и CardExpirySweeper,
+ * перехватывает отправленные ими запросы (SqlCaptureTestConfig) и выполняет EXPLAIN для каждого с теми же параметрами.
+ * Данные засеваются с избирательными значениями фильтров, как в рабочей базе: почти все карты активны,
+ * сроки действия распределены по десяти годам, у пользователя немного карт
+ */
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class, SqlCaptureTestConfig.class},
+        properties = "cards.expiry.pause=0ms")
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class CardQueryPlanTest implements PostgreSQLContainerInitializer {
+
+    private static final int USERS = 2_000;
+    private static final int CARDS = 200_000;
+    private static final LocalDate FIRST_FINAL_DATE = LocalDate.of(2025, 1, 1);
+    private static final Pageable PAGE = PageRequest.of(2, 20, Sort.by(Sort.Direction.DESC, "id"));
+    private static final Pattern CARDS_TABLE = Pattern.compile("\\bcards\\b", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardListingService cardListingService;
+
+    @Autowired
+    private CardExpirySweeper cardExpirySweeper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private long userId;
+
+    @BeforeAll
+    void seed() {
+        transaction = new TransactionTemplate(transactionManager);
+        cleanUp();
+        jdbcTemplate.update("""
+                INSERT INTO users (first_name, second_name, middle_name, email, phone_number, password)
+                SELECT 'Plan', 'Plan', 'Plan', 'plan-' || g || '@gmail.com', '+7' || lpad(g::text, 10, '0'), 'password'
+                FROM generate_series(1, ?) g
+                """, USERS);
+        userId = jdbcTemplate.queryForObject("SELECT min(id) FROM users", Long.class);
+        jdbcTemplate.update("""
+                INSERT INTO cards (final_date, status, balance, user_id)
+                SELECT ?::timestamp + (g % 3650) * interval '1 day',
+                       CASE WHEN g % 100 = 0 THEN 'BLOCKED' WHEN g % 100 = 1 THEN 'OUTDATED' ELSE 'ACTIVE' END,
+                       g % 100000,
+                       ? + g % ?
+                FROM generate_series(1, ?) g
+                """, FIRST_FINAL_DATE.atStartOfDay(), userId, USERS, CARDS);
+        jdbcTemplate.execute("ANALYZE cards");
+        jdbcTemplate.execute("ANALYZE users");
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM cards");
+        jdbcTemplate.update("DELETE FROM user_roles");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void findByUserId_ShouldUseIndex() {
+        assertNoSeqScan(() -> {
+            cardRepository.findAllByUserId(userId);
+            cardRepository.findCardDTOsByUserId(userId);
+        });
+    }
+
+    @Test
+    void searchByUserId_ShouldUseIndex() {
+        assertNoSeqScan(() -> cardService.search(userId, null, null, PAGE));
+    }
+
+    @Test
+    void searchByStatus_ShouldUseIndex() {
+        assertNoSeqScan(() -> cardService.search(null, "BLOCKED", null, PAGE));
+    }
+
+    @Test
+    void searchByFinalDate_ShouldUseIndex() {
+        assertNoSeqScan(() -> cardService.search(null, null, FIRST_FINAL_DATE.plusDays(100), PAGE));
+    }
+
+    @Test
+    void searchByAllFilters_ShouldUseIndex() {
+        assertNoSeqScan(() -> cardService.search(userId, "ACTIVE", FIRST_FINAL_DATE.plusDays(userId % 3650), PAGE));
+    }
+
+    // Первая и следующая страницы по балансу
+    @Test
+    void keysetSearchByUserId_ShouldUseIndex() {
+        assertNoSeqScan(() -> {
+            CardSearchPageDTO first = cardListingService.searchKeyset(userId, null, null, CardSortKey.BALANCE, true,
+                    null, 20, false);
+            cardListingService.searchKeyset(userId, null, null, CardSortKey.BALANCE, true,
+                    first.nextCursor(), 20, false);
+        });
+    }
+
+    @Test
+    void lookupsById_ShouldUseIndex() {
+        long midId = jdbcTemplate.queryForObject("SELECT min(id) + ? FROM cards", Long.class, CARDS / 2);
+        assertNoSeqScan(() -> {
+            transaction.executeWithoutResult(status ->
+                    cardRepository.findAllByIdInForUpdate(List.of(midId, midId + 1, midId + 2)));
+            cardListingService.findPage(midId, 100);
+        });
+    }
+
+    // Последним: проход переводит истёкшие карты в OUTDATED
+    @Test
+    @Order(Integer.MAX_VALUE)
+    void expiredActiveCards_ShouldUsePartialIndex() {
+        assertNoSeqScan(() -> cardExpirySweeper.sweep());
+    }
+
+    /**
+     * Выполняет action и проверяет планы всех запросов к cards, которые он отправил в БД, с теми же параметрами
+     */
+    private void assertNoSeqScan(Runnable action) {
+        Map<String, List<Object>> statements = new LinkedHashMap<>();
+        for (CapturedSql captured : SqlCaptureTestConfig.capture(action)) {
+            if (CARDS_TABLE.matcher(captured.sql()).find()) {
+                statements.putIfAbsent(captured.sql(), captured.args());
+            }
+        }
+        assertFalse(statements.isEmpty(), "Не перехвачено ни одного запроса к cards");
+        statements.forEach((sql, args) -> assertNoSeqScan(sql, args.toArray()));
+    }
+
+    private void assertNoSeqScan(String sql, Object... args) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args);
+        try {
+            List<String> seqScans = new ArrayList<>();
+            collectSeqScans(objectMapper.readTree(plan).path(0).path("Plan"), seqScans);
+            assertTrue(seqScans.isEmpty(), "Seq Scan по " + seqScans + " в плане запроса " + sql + "\n" + plan);
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void collectSeqScans(JsonNode node, List<String> seqScans) {
+        if ("Seq Scan".equals(node.path("Node Type").asText()) && "cards".equals(node.path("Relation Name").asText())) {
+            seqScans.add(node.path("Relation Name").asText());
+        }
+        node.path("Plans").forEach(child -> collectSeqScans(child, seqScans));
+    }
+}
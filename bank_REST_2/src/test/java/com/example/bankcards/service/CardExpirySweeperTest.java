@@ -0,0 +1,139 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class},
+        properties = {"cards.expiry.chunk-size=2", "cards.expiry.pause=0ms"})
+@ActiveProfiles("test")
+public class CardExpirySweeperTest implements PostgreSQLContainerInitializer {
+
+    @Autowired
+    private CardExpirySweeper cardExpirySweeper;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        user = new User();
+        user.setPhoneNumber("+79540012393");
+        user.setEmail("expiry@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user = usersRepository.save(user);
+    }
+
+    @Test
+    void sweep_ShouldOutdateOnlyExpiredActiveCardsAcrossChunks() {
+        LocalDate today = LocalDate.now();
+        Long expired1 = card(Status.ACTIVE, today.minusDays(1));
+        Long expired2 = card(Status.ACTIVE, today.minusYears(1));
+        Long expired3 = card(Status.ACTIVE, today.minusDays(10));
+        Long blocked = card(Status.BLOCKED, today.minusDays(1));
+        Long lastDay = card(Status.ACTIVE, today);
+        Long valid = card(Status.ACTIVE, today.plusYears(1));
+
+        assertEquals(3, cardExpirySweeper.sweep());
+
+        assertEquals(Status.OUTDATED, status(expired1));
+        assertEquals(Status.OUTDATED, status(expired2));
+        assertEquals(Status.OUTDATED, status(expired3));
+        assertEquals(Status.BLOCKED, status(blocked));
+        assertEquals(Status.ACTIVE, status(lastDay));
+        assertEquals(Status.ACTIVE, status(valid));
+        assertEquals(1L, cardRepository.findById(expired1).orElseThrow().getVersion());
+
+        assertEquals(0, cardExpirySweeper.sweep());
+    }
+
+    @Test
+    void sweep_WhenAnotherNodeHoldsLock_ShouldSkipRun() throws Exception {
+        Long expired = card(Status.ACTIVE, LocalDate.now().minusDays(1));
+
+        try (Connection otherNode = dataSource.getConnection()) {
+            execute(otherNode, "SELECT pg_advisory_lock(?)");
+            try {
+                assertEquals(0, cardExpirySweeper.sweep());
+                assertEquals(Status.ACTIVE, status(expired));
+            } finally {
+                execute(otherNode, "SELECT pg_advisory_unlock(?)");
+            }
+        }
+
+        assertEquals(1, cardExpirySweeper.sweep());
+        assertEquals(Status.OUTDATED, status(expired));
+    }
+
+    @Test
+    void sweep_ShouldReleaseLockWithChunkTransaction() throws Exception {
+        card(Status.ACTIVE, LocalDate.now().minusDays(1));
+
+        assertEquals(1, cardExpirySweeper.sweep());
+
+        try (Connection otherNode = dataSource.getConnection();
+             PreparedStatement statement = otherNode.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, CardExpirySweeper.LOCK_KEY);
+            try (ResultSet rs = statement.executeQuery()) {
+                assertTrue(rs.next() && rs.getBoolean(1));
+            }
+            execute(otherNode, "SELECT pg_advisory_unlock(?)");
+        }
+    }
+
+    private Long card(Status status, LocalDate finalDate) {
+        Card card = new Card();
+        card.setStatus(status);
+        card.setUser(user);
+        card.setBalance(1000L);
+        card.setFinalDate(finalDate);
+        return cardRepository.save(card).getId();
+    }
+
+    private Status status(Long cardId) {
+        return cardRepository.findById(cardId).orElseThrow().getStatus();
+    }
+
+    private void execute(Connection connection, String sql) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, CardExpirySweeper.LOCK_KEY);
+            statement.execute();
+        }
+    }
+}
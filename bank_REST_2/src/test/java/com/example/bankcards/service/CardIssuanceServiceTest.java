@@ -0,0 +1,145 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.CardBulkResultDTO;
+import com.example.bankcards.dto.CardIssueErrorDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class},
+        properties = {"cards.bulk.chunk-size=2", "cards.bulk.batch-size=2"})
+@ActiveProfiles("test")
+public class CardIssuanceServiceTest implements PostgreSQLContainerInitializer {
+
+    @Autowired
+    private CardIssuanceService cardIssuanceService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012396");
+        user.setEmail("bulk@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        userId = usersRepository.save(user).getId();
+    }
+
+    @Test
+    void issue_JsonArray_ShouldInsertEveryCardAcrossChunks() throws Exception {
+        CardBulkResultDTO result = issue("""
+                [
+                  {"finalDate": "2030-01-01", "balance": 100, "userId": %1$d},
+                  {"finalDate": "2030-01-01", "balance": 200, "userId": %1$d, "status": "BLOCKED"},
+                  {"finalDate": "2030-01-01", "balance": 300, "userId": %1$d, "id": 999999}
+                ]
+                """.formatted(userId));
+
+        assertEquals(3, result.received());
+        assertEquals(3, result.created());
+        assertTrue(result.errors().isEmpty());
+
+        List<Card> cards = cardRepository.findAll();
+        assertEquals(3, cards.size());
+        assertTrue(cards.stream().noneMatch(card -> card.getId() == 999999L));
+        assertEquals(2, cards.stream().filter(card -> card.getStatus() == Status.ACTIVE).count());
+    }
+
+    @Test
+    void issue_Ndjson_ShouldReadOneCardPerLine() throws Exception {
+        CardBulkResultDTO result = issue("""
+                {"finalDate": "2030-01-01", "balance": 100, "userId": %1$d}
+                {"finalDate": "2030-01-01", "balance": 200, "userId": %1$d}
+                """.formatted(userId));
+
+        assertEquals(2, result.received());
+        assertEquals(2, result.created());
+        assertEquals(2, cardRepository.count());
+    }
+
+    @Test
+    void issue_ShouldReportInvalidRowsAndInsertTheRest() throws Exception {
+        CardBulkResultDTO result = issue("""
+                [
+                  {"finalDate": "2030-01-01", "balance": 100, "userId": %1$d},
+                  {"finalDate": "2030-01-01", "balance": -1, "userId": %1$d},
+                  {"finalDate": "2030-01-01", "balance": 100, "userId": %2$d},
+                  {"finalDate": "2030-01-01", "balance": 100, "userId": %1$d, "status": "LOST"},
+                  {"finalDate": "2030-01-01", "balance": 100, "userId": %1$d}
+                ]
+                """.formatted(userId, userId + 1000));
+
+        assertEquals(5, result.received());
+        assertEquals(2, result.created());
+        assertEquals(List.of(1, 2, 3), result.errors().stream().map(CardIssueErrorDTO::index).toList());
+        assertEquals(userId + 1000, result.errors().get(1).userId());
+        assertEquals(2, cardRepository.count());
+    }
+
+    @Test
+    void issue_UnmappableRow_ShouldReportItAndContinueReading() throws Exception {
+        CardBulkResultDTO result = issue("""
+                [
+                  {"finalDate": "2030-01-01", "balance": 100, "userId": %1$d},
+                  {"finalDate": "not-a-date", "balance": 100, "userId": %1$d},
+                  {"finalDate": "2030-01-01", "balance": {"amount": 100}, "userId": %1$d},
+                  {"finalDate": "2030-01-01", "balance": 300, "userId": %1$d}
+                ]
+                """.formatted(userId));
+
+        assertEquals(4, result.received());
+        assertEquals(2, result.created());
+        assertEquals(List.of(1, 2), result.errors().stream().map(CardIssueErrorDTO::index).toList());
+        assertEquals(2, cardRepository.count());
+    }
+
+    @Test
+    void issue_MalformedJson_ShouldKeepCardsReadBeforeIt() throws Exception {
+        CardBulkResultDTO result = issue("""
+                {"finalDate": "2030-01-01", "balance": 100, "userId": %1$d}
+                {"finalDate": "2030-01-01", "balance":
+                """.formatted(userId));
+
+        assertEquals(1, result.received());
+        assertEquals(1, result.created());
+        assertEquals(1, result.errors().size());
+        assertEquals(1, result.errors().getFirst().index());
+        assertEquals(1, cardRepository.count());
+    }
+
+    private CardBulkResultDTO issue(String body) throws Exception {
+        return cardIssuanceService.issue(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
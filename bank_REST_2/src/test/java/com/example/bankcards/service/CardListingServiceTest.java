@@ -0,0 +1,191 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardExportDTO;
+import com.example.bankcards.dto.CardPageDTO;
+import com.example.bankcards.dto.CardSearchPageDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InvalidRequestException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.CardSortKey;
+import com.example.bankcards.util.ExportFormat;
+import com.example.bankcards.util.Status;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class}, properties = "cards.stream.fetch-size=2")
+@ActiveProfiles("test")
+public class CardListingServiceTest implements PostgreSQLContainerInitializer {
+
+    private static final int CARDS = 5;
+
+    @Autowired
+    private CardListingService cardListingService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private List<Long> cardIds;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012395");
+        user.setEmail("listing@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user = usersRepository.save(user);
+        userId = user.getId();
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setStatus(Status.ACTIVE);
+            card.setUser(user);
+            card.setBalance(1000L * i);
+            card.setFinalDate(LocalDate.of(2030, 1, 1));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+    }
+
+    @Test
+    void writeAllCards_AsJsonArray_ShouldStreamEveryCardInIdOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        cardListingService.writeAllCards(out, false);
+
+        List<CardDTO> cards = objectMapper.readValue(out.toByteArray(), new TypeReference<>() {
+        });
+        assertEquals(cardIds, cards.stream().map(CardDTO::getId).toList());
+        assertEquals(LocalDate.of(2030, 1, 1), cards.getFirst().getFinalDate());
+        assertEquals("ACTIVE", cards.getFirst().getStatus());
+    }
+
+    @Test
+    void writeAllCards_AsNdjson_ShouldWriteOneCardPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        cardListingService.writeAllCards(out, true);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).strip().split("\n");
+        assertEquals(CARDS, lines.length);
+        assertEquals(cardIds.getLast(), objectMapper.readValue(lines[CARDS - 1], CardDTO.class).getId());
+    }
+
+    @Test
+    void findPage_ShouldWalkAllCardsByKey() {
+        CardPageDTO first = cardListingService.findPage(0, 3);
+        CardPageDTO second = cardListingService.findPage(first.nextAfter(), 3);
+
+        assertEquals(cardIds.subList(0, 3), first.content().stream().map(CardDTO::getId).toList());
+        assertEquals(cardIds.subList(3, CARDS), second.content().stream().map(CardDTO::getId).toList());
+        assertNull(second.nextAfter());
+    }
+
+    @Test
+    void searchKeyset_ShouldWalkPagesByBalanceWithoutGapsOrDuplicates() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CardSearchPageDTO page = cardListingService.searchKeyset(userId, null, null, CardSortKey.BALANCE,
+                    true, cursor, 2, false);
+            page.content().forEach(card -> seen.add(card.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(cardIds.reversed(), seen);
+    }
+
+    @Test
+    void searchKeyset_WithApproximateTotal_ShouldReturnPlannerEstimate() {
+        CardSearchPageDTO page = cardListingService.searchKeyset(userId, "active", null, CardSortKey.ID,
+                true, null, 10, true);
+
+        assertEquals(CARDS, page.content().size());
+        assertNotNull(page.approximateTotal());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void searchKeyset_WhenCursorIsForAnotherSort_ShouldThrow() {
+        String cursor = cardListingService.searchKeyset(userId, null, null, CardSortKey.ID, true, null, 1, false)
+                .nextCursor();
+
+        assertThrows(InvalidRequestException.class, () -> cardListingService.searchKeyset(userId, null, null,
+                CardSortKey.BALANCE, true, cursor, 1, false));
+        assertThrows(InvalidRequestException.class, () -> cardListingService.searchKeyset(userId, null, null,
+                CardSortKey.ID, true, "garbage", 1, false));
+    }
+
+    @Test
+    void exportCards_AsCsv_ShouldWriteHeaderAndOwnerOfEveryCard() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        cardListingService.exportCards(out, ExportFormat.CSV, false, null, null, null);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(CARDS + 1, lines.length);
+        assertTrue(lines[0].startsWith("\"id\",\"final_date\""));
+        assertTrue(Arrays.stream(lines).skip(1).allMatch(line -> line.contains("\"listing@gmail.com\"")));
+    }
+
+    @Test
+    void exportCards_AsGzippedNdjson_ShouldApplySearchFilters() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        cardListingService.exportCards(out, ExportFormat.NDJSON, true, userId, "active", LocalDate.of(2030, 1, 1));
+
+        String content;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = content.strip().split("\n");
+        assertEquals(CARDS, lines.length);
+        CardExportDTO card = objectMapper.readValue(lines[0], CardExportDTO.class);
+        assertEquals(userId, card.userId());
+        assertEquals("listing@gmail.com", card.email());
+        assertEquals(LocalDate.of(2030, 1, 1), card.finalDate());
+
+        ByteArrayOutputStream blocked = new ByteArrayOutputStream();
+        cardListingService.exportCards(blocked, ExportFormat.NDJSON, false, userId, "blocked", null);
+        assertEquals(0, blocked.size());
+    }
+}
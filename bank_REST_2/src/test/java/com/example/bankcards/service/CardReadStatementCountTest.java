@@ -0,0 +1,118 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.Status;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Число SQL-запросов на списочные запросы карт не зависит от числа карт на странице:
+ * владелец карты не загружается ни для CardDTO по пользователю, ни для поиска
+ */
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class},
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+public class CardReadStatementCountTest implements PostgreSQLContainerInitializer {
+
+    private static final int USERS = 10;
+    private static final int CARDS_PER_USER = 6;
+    private static final LocalDate FINAL_DATE = LocalDate.of(2030, 1, 1);
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        users = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            User user = new User();
+            user.setPhoneNumber("+7954001" + String.format("%04d", u));
+            user.setEmail("statements" + u + "@gmail.com");
+            user.setFirstName("Павел");
+            user.setMiddleName("Павлов");
+            user.setSecondName("Павлович");
+            user.setPassword("securepassword113");
+            user = usersRepository.save(user);
+            users.add(user);
+
+            for (int c = 0; c < CARDS_PER_USER; c++) {
+                Card card = new Card();
+                card.setStatus(Status.ACTIVE);
+                card.setUser(user);
+                card.setBalance(1000L);
+                card.setFinalDate(FINAL_DATE);
+                cardRepository.save(card);
+            }
+        }
+    }
+
+    @Test
+    void search_ShouldRunSameNumberOfStatementsForAnyPageSize() {
+        long small = countStatements(() -> cardService.search(null, null, FINAL_DATE, page(5)));
+        long large = countStatements(() -> cardService.search(null, null, FINAL_DATE, page(50)));
+
+        // Страница и count(*)
+        assertEquals(2, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void findByUserId_ShouldRunSingleStatement() {
+        User user = users.getFirst();
+        UserDetailsImpl userDetails = new UserDetailsImpl(user.getId(), "Павел", user.getEmail(), user.getPassword(),
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), user.getPhoneNumber());
+
+        assertEquals(1, countStatements(() -> assertEquals(CARDS_PER_USER,
+                cardService.findByUserId(user.getId(), userDetails).size())));
+    }
+
+    private long countStatements(Runnable action) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private PageRequest page(int size) {
+        return PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "id"));
+    }
+}
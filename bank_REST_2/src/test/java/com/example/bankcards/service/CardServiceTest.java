@@ -2,26 +2,33 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferResultDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.DifferentIdentifierException;
 import com.example.bankcards.exception.NegativeBalanceException;
 import com.example.bankcards.exception.SameCardException;
+import com.example.bankcards.exception.TransferBatchRejectedException;
 import com.example.bankcards.exception.UnactiveCardException;
 import com.example.bankcards.mapper.CardMapper;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.util.RoleEnum;
 import com.example.bankcards.util.Status;
+import com.example.bankcards.util.TransferBatchMode;
+import com.example.bankcards.util.TransferMode;
+import com.example.bankcards.util.TransferResultStatus;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -32,6 +39,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -50,33 +59,18 @@ class CardServiceTest {
     @Mock
     private CardMapper cardMapper;
 
-    @InjectMocks
-    private CardService cardService;
-
-    //findAllCardsTest
-    @Test
-    void findAllCardsTest() {
-        User user = makeAUser();
-        user.setId(1L);
-
-        Card card = makeACard(user);
-        card.setId(123L);
-
-        CardDTO cardDTO = new CardDTO();
-        cardDTO.setId(card.getId());
-
-        when(cardRepository.findAll()).thenReturn(List.of(card));
-        when(cardMapper.makeACardDTO(card)).thenReturn(cardDTO);
+    @Mock
+    private TransferService transferService;
 
-        List<CardDTO> result = cardService.findAllCards();
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
-        assertNotNull(result);
+    @Mock
+    private ObjectProvider<ShardedBalanceEngine> shardedBalanceEngine;
 
-        verify(cardRepository, times(1)).findAll();
-        verify(cardMapper, times(1)).makeACardDTO(card);
+    @InjectMocks
+    private CardService cardService;
 
-        assertEquals(123L, result.getFirst().getId());
-    }
     //SaveCardTest
     @Test
     void saveCardTest() {
@@ -230,14 +224,14 @@ class CardServiceTest {
         TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
         UserDetailsImpl userDetails = makeUserDetails(user);
 
-        when(cardRepository.getReferenceById(2L)).thenReturn(toCard);
-        when(cardRepository.getReferenceById(1L)).thenReturn(fromCard);
-        when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(fromCard));
 
         cardService.transfer(transactionDTO, userDetails);
 
-        verify(cardRepository, times(2)).getReferenceById(anyLong());
-        verify(cardRepository, times(2)).save(any(Card.class));
+        verify(cardRepository, times(2)).findByIdForUpdate(anyLong());
+        verify(cardRepository, never()).getReferenceById(anyLong());
+        verify(transferService, times(1)).recordTransfer(transactionDTO, user.getId());
 
         assertEquals(9000L, fromCard.getBalance());
         assertEquals(2000L, toCard.getBalance());
@@ -262,8 +256,8 @@ class CardServiceTest {
         TransactionDTO transactionDTO = new TransactionDTO(2L, 1L, 1000L);
         UserDetailsImpl attackerDetails = makeUserDetails(attacker);
 
-        when(cardRepository.getReferenceById(2L)).thenReturn(fromCard);
-        when(cardRepository.getReferenceById(1L)).thenReturn(toCard);
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(toCard));
 
         assertThrows(DifferentIdentifierException.class, () -> {
             cardService.transfer(transactionDTO, attackerDetails);
@@ -292,8 +286,8 @@ class CardServiceTest {
         TransactionDTO transactionDTO = new TransactionDTO(2L, 1L, 1000L);
         UserDetailsImpl attackerDetails = makeUserDetails(attacker);
 
-        when(cardRepository.getReferenceById(2L)).thenReturn(fromCard);
-        when(cardRepository.getReferenceById(1L)).thenReturn(toCard);
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(toCard));
 
         assertThrows(DifferentIdentifierException.class, () -> {
             cardService.transfer(transactionDTO, attackerDetails);
@@ -319,8 +313,8 @@ class CardServiceTest {
         TransactionDTO transactionDTO = new TransactionDTO(2L, 1L, 1000L);
         UserDetailsImpl userDetails = makeUserDetails(user);
 
-        when(cardRepository.getReferenceById(2L)).thenReturn(fromCard);
-        when(cardRepository.getReferenceById(1L)).thenReturn(toCard);
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(toCard));
 
         assertThrows(UnactiveCardException.class, () -> {
             cardService.transfer(transactionDTO, userDetails);
@@ -346,8 +340,8 @@ class CardServiceTest {
         TransactionDTO transactionDTO = new TransactionDTO(2L, 1L, 1000L);
         UserDetailsImpl userDetails = makeUserDetails(user);
 
-        when(cardRepository.getReferenceById(2L)).thenReturn(fromCard);
-        when(cardRepository.getReferenceById(1L)).thenReturn(toCard);
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(toCard));
 
         assertThrows(UnactiveCardException.class, () -> {
             cardService.transfer(transactionDTO, userDetails);
@@ -368,14 +362,251 @@ class CardServiceTest {
         TransactionDTO transactionDTO = new TransactionDTO(1L, 1L, 1000L);
         UserDetailsImpl userDetails = makeUserDetails(user);
 
-        when(cardRepository.getReferenceById(1L)).thenReturn(card);
-
         assertThrows(SameCardException.class, () -> {
             cardService.transfer(transactionDTO, userDetails);
         });
 
+        verify(cardRepository, never()).findByIdForUpdate(anyLong());
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void transfer_ShouldLockCardsInAscendingIdOrder() {
+        User user = makeAUser();
+
+        Card fromCard = makeACard(user);
+        fromCard.setId(5L);
+
+        Card toCard = makeACard(user);
+        toCard.setId(3L);
+
+        TransactionDTO transactionDTO = new TransactionDTO(5L, 3L, 1000L);
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.findByIdForUpdate(3L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(fromCard));
+
+        cardService.transfer(transactionDTO, userDetails);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findByIdForUpdate(3L);
+        inOrder.verify(cardRepository).findByIdForUpdate(5L);
+
+        assertEquals(9000L, fromCard.getBalance());
+        assertEquals(11000L, toCard.getBalance());
+    }
+
+    @Test
+    void transfer_WhenBalanceIsNotEnough_ShouldThrowException() {
+        User user = makeAUser();
+
+        Card fromCard = makeACard(user);
+        fromCard.setBalance(500L);
+
+        Card toCard = makeACard(user);
+        toCard.setId(2L);
+
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(toCard));
+
+        assertThrows(NegativeBalanceException.class, () -> {
+            cardService.transfer(transactionDTO, userDetails);
+        });
+
+        verify(transferService, never()).recordTransfer(any(), any());
+        assertEquals(500L, fromCard.getBalance());
+        assertEquals(10000L, toCard.getBalance());
+    }
+    //тест метода transfer в режиме CONDITIONAL
+    @Test
+    void conditionalTransfer_Success() {
+        ReflectionTestUtils.setField(cardService, "transferMode", TransferMode.CONDITIONAL);
+        User user = makeAUser();
+
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.debit(1L, user.getId(), 1000L)).thenReturn(1);
+        when(cardRepository.credit(2L, user.getId(), 1000L)).thenReturn(1);
+
+        TransactionDTO result = cardService.transfer(transactionDTO, userDetails);
+
+        assertEquals(transactionDTO, result);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).debit(1L, user.getId(), 1000L);
+        inOrder.verify(cardRepository).credit(2L, user.getId(), 1000L);
+        verify(cardRepository, never()).findByIdForUpdate(anyLong());
+        verify(cardRepository, never()).findById(anyLong());
         verify(cardRepository, never()).save(any());
     }
+
+    //тест метода transfer в режиме SHARDED
+    @Test
+    void shardedTransfer_ShouldDelegateToEngine() {
+        ReflectionTestUtils.setField(cardService, "transferMode", TransferMode.SHARDED);
+        User user = makeAUser();
+        ShardedBalanceEngine engine = mock(ShardedBalanceEngine.class);
+
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(shardedBalanceEngine.getObject()).thenReturn(engine);
+        when(engine.transfer(transactionDTO, user.getId())).thenReturn(transactionDTO);
+
+        assertEquals(transactionDTO, cardService.transfer(transactionDTO, userDetails));
+
+        verifyNoInteractions(cardRepository, transferService, transactionManager);
+    }
+
+    @Test
+    void conditionalTransfer_ShouldUpdateCardsInAscendingIdOrder() {
+        ReflectionTestUtils.setField(cardService, "transferMode", TransferMode.CONDITIONAL);
+        User user = makeAUser();
+
+        TransactionDTO transactionDTO = new TransactionDTO(5L, 3L, 1000L);
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.debit(5L, user.getId(), 1000L)).thenReturn(1);
+        when(cardRepository.credit(3L, user.getId(), 1000L)).thenReturn(1);
+
+        cardService.transfer(transactionDTO, userDetails);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).credit(3L, user.getId(), 1000L);
+        inOrder.verify(cardRepository).debit(5L, user.getId(), 1000L);
+    }
+
+    @Test
+    void conditionalTransfer_WhenBalanceIsNotEnough_ShouldThrowException() {
+        ReflectionTestUtils.setField(cardService, "transferMode", TransferMode.CONDITIONAL);
+        User user = makeAUser();
+
+        Card fromCard = makeACard(user);
+        fromCard.setBalance(500L);
+
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.debit(1L, user.getId(), 1000L)).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
+
+        assertThrows(NegativeBalanceException.class, () -> {
+            cardService.transfer(transactionDTO, userDetails);
+        });
+
+        verify(cardRepository, never()).credit(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void conditionalTransfer_WhenToCardIsNotActive_ShouldThrowException() {
+        ReflectionTestUtils.setField(cardService, "transferMode", TransferMode.CONDITIONAL);
+        User user = makeAUser();
+
+        Card toCard = makeACard(user);
+        toCard.setId(2L);
+        toCard.setStatus(Status.BLOCKED);
+
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.debit(1L, user.getId(), 1000L)).thenReturn(1);
+        when(cardRepository.credit(2L, user.getId(), 1000L)).thenReturn(0);
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+
+        assertThrows(UnactiveCardException.class, () -> {
+            cardService.transfer(transactionDTO, userDetails);
+        });
+    }
+
+    //тест метода transferBatch
+    @Test
+    void transferBatch_BestEffort_ShouldApplyValidAndRejectInvalid() {
+        User user = makeAUser();
+
+        Card card1 = makeACard(user);
+        Card card2 = makeACard(user);
+        card2.setId(2L);
+        Card card3 = makeACard(user);
+        card3.setId(3L);
+        card3.setStatus(Status.BLOCKED);
+
+        List<TransactionDTO> transfers = List.of(
+                new TransactionDTO(1L, 2L, 1000L),
+                new TransactionDTO(2L, 3L, 1000L),
+                new TransactionDTO(2L, 1L, 500L));
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L, 3L))).thenReturn(List.of(card1, card2, card3));
+
+        List<TransferResultDTO> results = cardService.transferBatch(transfers, TransferBatchMode.BEST_EFFORT, userDetails);
+
+        assertEquals(TransferResultStatus.APPLIED, results.get(0).status());
+        assertEquals(TransferResultStatus.REJECTED, results.get(1).status());
+        assertEquals(TransferResultStatus.APPLIED, results.get(2).status());
+
+        assertEquals(9500L, card1.getBalance());
+        assertEquals(10500L, card2.getBalance());
+        assertEquals(10000L, card3.getBalance());
+
+        verify(cardRepository, times(1)).findAllByIdInForUpdate(anyCollection());
+        verify(transferService, times(1)).recordTransfers(List.of(transfers.get(0), transfers.get(2)), user.getId());
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBatch_AllOrNothing_WhenOneTransferFails_ShouldRejectWholeBatch() {
+        User user = makeAUser();
+
+        Card card1 = makeACard(user);
+        Card card2 = makeACard(user);
+        card2.setId(2L);
+
+        List<TransactionDTO> transfers = List.of(
+                new TransactionDTO(1L, 2L, 1000L),
+                new TransactionDTO(2L, 1L, 100000L));
+        UserDetailsImpl userDetails = makeUserDetails(user);
+
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(card1, card2));
+
+        TransferBatchRejectedException exception = assertThrows(TransferBatchRejectedException.class,
+                () -> cardService.transferBatch(transfers, TransferBatchMode.ALL_OR_NOTHING, userDetails));
+
+        assertEquals(TransferResultStatus.ROLLED_BACK, exception.getResults().get(0).status());
+        assertEquals(TransferResultStatus.REJECTED, exception.getResults().get(1).status());
+        assertEquals("Недостаточно средств", exception.getResults().get(1).message());
+    }
+
+    //тест метода applyTransferGroup (режим GROUP_COMMIT)
+    @Test
+    void applyTransferGroup_ShouldCheckEachTransferAgainstItsOwnUser() {
+        User owner = makeAUser();
+
+        Card card1 = makeACard(owner);
+        Card card2 = makeACard(owner);
+        card2.setId(2L);
+
+        List<TransactionDTO> transfers = List.of(
+                new TransactionDTO(1L, 2L, 1000L),
+                new TransactionDTO(2L, 1L, 500L),
+                new TransactionDTO(1L, 2L, 100000L));
+
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(card1, card2));
+
+        List<RuntimeException> rejections = cardService.applyTransferGroup(transfers, List.of(1L, 2L, 1L));
+
+        assertNull(rejections.get(0));
+        assertInstanceOf(DifferentIdentifierException.class, rejections.get(1));
+        assertInstanceOf(NegativeBalanceException.class, rejections.get(2));
+
+        assertEquals(9000L, card1.getBalance());
+        assertEquals(11000L, card2.getBalance());
+        verify(transferService, times(1)).recordTransfers(List.of(transfers.get(0)), List.of(1L));
+    }
+
     //findByUserId
     @Test
     void getCardsByUserId_Test() {
@@ -383,15 +614,12 @@ class CardServiceTest {
         User user = makeAUser();
         user.setId(userId);
 
-        Card card1 = makeACard(user);
-        Card card2 = makeACard(user);
-        List<Card> expectedCards = Arrays.asList(card1, card2);
-
         CardDTO cardDTO1 = new CardDTO();
-        cardDTO1.setId(card1.getId());
+        cardDTO1.setId(1L);
 
         CardDTO cardDTO2 = new CardDTO();
-        cardDTO2.setId(card2.getId());
+        cardDTO2.setId(2L);
+        List<CardDTO> expectedCards = Arrays.asList(cardDTO1, cardDTO2);
 
         UserDetailsImpl userDetails = makeUserDetails(user);
 
@@ -399,20 +627,18 @@ class CardServiceTest {
                 userDetails, null, userDetails.getAuthorities());
         SecurityContextHolder.getContext().setAuthentication(auth);
 
-        when(cardRepository.findAllByUserId(userId)).thenReturn(expectedCards);
-        when(cardMapper.makeACardDTO(card1)).thenReturn(cardDTO1);
-        when(cardMapper.makeACardDTO(card2)).thenReturn(cardDTO2);
+        when(cardRepository.findCardDTOsByUserId(userId)).thenReturn(expectedCards);
 
         List<CardDTO> result = cardService.findByUserId(userId, userDetails);
 
         assertNotNull(result);
         assertEquals(expectedCards.size(), result.size());
 
-        verify(cardRepository, times(1)).findAllByUserId(userId);
-        verify(cardMapper, times(1)).makeACardDTO(card1);
-        verify(cardMapper, times(1)).makeACardDTO(card2);
+        verify(cardRepository, times(1)).findCardDTOsByUserId(userId);
+        verify(cardRepository, never()).findAllByUserId(any());
+        verify(cardMapper, never()).makeACardDTO(any());
 
-        assertEquals(card1.getId(), result.getFirst().getId());
+        assertEquals(cardDTO1.getId(), result.getFirst().getId());
     }
 
     @Test
@@ -423,14 +649,14 @@ class CardServiceTest {
 
         UserDetailsImpl userDetails = makeUserDetails(user);
 
-        when(cardRepository.findAllByUserId(userId)).thenReturn(Collections.emptyList());
+        when(cardRepository.findCardDTOsByUserId(userId)).thenReturn(Collections.emptyList());
 
         List<CardDTO> result = cardService.findByUserId(userId, userDetails);
 
         assertNotNull(result);
         assertTrue(result.isEmpty());
 
-        verify(cardRepository, times(1)).findAllByUserId(userId);
+        verify(cardRepository, times(1)).findCardDTOsByUserId(userId);
         verify(cardMapper, never()).makeACardDTO(any());
     }
     //findById
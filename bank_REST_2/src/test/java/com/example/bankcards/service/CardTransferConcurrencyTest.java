@@ -0,0 +1,176 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочный тест переводов: много потоков одновременно переводят деньги между
+ * небольшим набором карт одного пользователя. Проверяется, что сумма балансов не меняется,
+ * и выводится число переводов в секунду для блокирующего пути и для старого SERIALIZABLE пути.
+ */
+@Slf4j
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class})
+@ActiveProfiles("test")
+public class CardTransferConcurrencyTest implements PostgreSQLContainerInitializer {
+
+    private static final int CARDS = 10;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 250;
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private UserDetailsImpl userDetails;
+
+    private List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012399");
+        user.setEmail("concurrency@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user = usersRepository.save(user);
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setStatus(Status.ACTIVE);
+            card.setUser(user);
+            card.setBalance(INITIAL_BALANCE);
+            card.setFinalDate(LocalDate.now().plusYears(3));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+
+        userDetails = new UserDetailsImpl(user.getId(), "Павел", user.getEmail(), user.getPassword(),
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), user.getPhoneNumber());
+    }
+
+    @Test
+    void lockingTransfer_ShouldKeepTotalBalanceAndNeverAbort() throws InterruptedException {
+        RunResult result = run(dto -> cardService.transfer(dto, userDetails));
+
+        log.info("Блокирующий перевод: {} переводов/с, отказов {}", result.perSecond(), result.failures());
+
+        assertEquals(0, result.failures());
+        assertEquals(INITIAL_BALANCE * CARDS, totalBalance());
+    }
+
+    @Test
+    void serializableTransfer_ShouldKeepTotalBalance() throws InterruptedException {
+        TransactionTemplate serializable = new TransactionTemplate(transactionManager);
+        serializable.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+
+        // Воспроизводит прежний путь: чтение без блокировок и read-modify-write под SERIALIZABLE
+        RunResult result = run(dto -> serializable.executeWithoutResult(status -> {
+            Card from = cardRepository.findById(dto.fromCardId()).orElseThrow();
+            Card to = cardRepository.findById(dto.toCardId()).orElseThrow();
+            from.setBalance(from.getBalance() - dto.amount());
+            to.setBalance(to.getBalance() + dto.amount());
+        }));
+
+        log.info("SERIALIZABLE перевод: {} переводов/с, отказов {}", result.perSecond(), result.failures());
+
+        assertEquals(INITIAL_BALANCE * CARDS, totalBalance());
+    }
+
+    private RunResult run(Consumer<TransactionDTO> transfer) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = random.nextInt(CARDS);
+                        int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                        try {
+                            transfer.accept(new TransactionDTO(cardIds.get(from), cardIds.get(to),
+                                    random.nextLong(1, 100)));
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        int total = THREADS * TRANSFERS_PER_THREAD;
+        long perSecond = Math.round((total - failures.get()) / (elapsedNanos / 1_000_000_000.0));
+        return new RunResult(perSecond, failures.get());
+    }
+
+    private long totalBalance() {
+        return cardRepository.findAllById(cardIds).stream()
+                .mapToLong(Card::getBalance)
+                .sum();
+    }
+
+    private record RunResult(long perSecond, int failures) {
+    }
+}
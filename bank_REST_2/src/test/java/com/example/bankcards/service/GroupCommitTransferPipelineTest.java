@@ -0,0 +1,136 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.NegativeBalanceException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Переводы в режиме GROUP_COMMIT: параллельные запросы объединяются в группы,
+ * каждый получает свой результат, сумма балансов сохраняется
+ */
+@Slf4j
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class},
+        properties = "transfer.mode=GROUP_COMMIT")
+@ActiveProfiles("test")
+public class GroupCommitTransferPipelineTest implements PostgreSQLContainerInitializer {
+
+    private static final int CARDS = 10;
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private UserDetailsImpl userDetails;
+
+    private List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012397");
+        user.setEmail("group@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user = usersRepository.save(user);
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setStatus(Status.ACTIVE);
+            card.setUser(user);
+            card.setBalance(INITIAL_BALANCE);
+            card.setFinalDate(LocalDate.now().plusYears(3));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+
+        userDetails = new UserDetailsImpl(user.getId(), "Павел", user.getEmail(), user.getPassword(),
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), user.getPhoneNumber());
+    }
+
+    @Test
+    void concurrentTransfers_ShouldBeGroupedAndKeepTotalBalance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    cardService.transfer(new TransactionDTO(cardIds.get(from), cardIds.get(to),
+                            random.nextLong(1, 100)), userDetails);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        long groups = meterRegistry.get("transfer.group.fill.ratio").summary().count();
+        log.info("GROUP_COMMIT: {} переводов/с, групп {}",
+                Math.round(THREADS * TRANSFERS_PER_THREAD / (elapsedNanos / 1_000_000_000.0)), groups);
+
+        assertEquals(INITIAL_BALANCE * CARDS, cardRepository.findAllById(cardIds).stream()
+                .mapToLong(Card::getBalance)
+                .sum());
+        assertTrue(groups < THREADS * TRANSFERS_PER_THREAD, "Переводы должны объединяться в группы");
+    }
+
+    @Test
+    void rejectedTransfer_ShouldFailOnlyItsOwnRequest() {
+        TransactionDTO tooMuch = new TransactionDTO(cardIds.get(0), cardIds.get(1), INITIAL_BALANCE + 1);
+
+        assertThrows(NegativeBalanceException.class, () -> cardService.transfer(tooMuch, userDetails));
+        cardService.transfer(new TransactionDTO(cardIds.get(0), cardIds.get(1), 100L), userDetails);
+
+        assertEquals(INITIAL_BALANCE - 100L, cardRepository.findById(cardIds.get(0)).orElseThrow().getBalance());
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.exception.NegativeBalanceException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotencyService idempotencyService;
+
+    private final UserDetailsImpl userDetails = new UserDetailsImpl(1L, "Павел", "hellothere@gmail.com",
+            "securepassword113", List.of(new SimpleGrantedAuthority("ROLE_USER")), "+79540012325");
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, cardService, transactionManager,
+                new ObjectMapper(), Duration.ofHours(1), 100, 2);
+    }
+
+    @Test
+    void transfer_FirstRequest_ShouldExecuteAndStoreResponse() {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+
+        when(idempotencyKeyRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        when(cardService.transfer(transactionDTO, userDetails)).thenReturn(transactionDTO);
+
+        TransactionDTO result = idempotencyService.transfer("key-1", transactionDTO, userDetails);
+
+        assertEquals(transactionDTO, result);
+        verify(idempotencyKeyRepository, times(1)).complete(eq(1L), eq("key-1"), contains("\"amount\":1000"));
+    }
+
+    @Test
+    void transfer_RepeatedRequest_ShouldBeServedFromCache() {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+
+        when(idempotencyKeyRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        when(cardService.transfer(transactionDTO, userDetails)).thenReturn(transactionDTO);
+
+        idempotencyService.transfer("key-1", transactionDTO, userDetails);
+        TransactionDTO repeated = idempotencyService.transfer("key-1", transactionDTO, userDetails);
+
+        assertEquals(transactionDTO, repeated);
+        verify(cardService, times(1)).transfer(any(), any());
+        verify(idempotencyKeyRepository, times(1)).claim(anyLong(), anyString(), anyString(), any(), any());
+        // Повтор из кэша не открывает транзакцию
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    void transfer_RepeatedRequestWithDifferentBody_ShouldThrowConflict() {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+
+        when(idempotencyKeyRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        when(cardService.transfer(transactionDTO, userDetails)).thenReturn(transactionDTO);
+
+        idempotencyService.transfer("key-1", transactionDTO, userDetails);
+
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.transfer("key-1", new TransactionDTO(1L, 2L, 2000L), userDetails));
+        verify(cardService, times(1)).transfer(any(), any());
+    }
+
+    @Test
+    void transfer_WhenKeyIsStoredInDatabase_ShouldReplayStoredResponse() throws Exception {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+
+        when(idempotencyKeyRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any())).thenReturn(0);
+        when(idempotencyKeyRepository.findById(new IdempotencyKey.PrimaryKey(1L, "key-1")))
+                .thenAnswer(invocation -> {
+                    // Хэш берём из аргумента claim, чтобы не дублировать алгоритм в тесте
+                    String requestHash = mockingDetails(idempotencyKeyRepository).getInvocations().stream()
+                            .filter(call -> call.getMethod().getName().equals("claim"))
+                            .findFirst().orElseThrow()
+                            .getArgument(2);
+                    IdempotencyKey stored = new IdempotencyKey();
+                    stored.setUserId(1L);
+                    stored.setKey("key-1");
+                    stored.setRequestHash(requestHash);
+                    stored.setResponseBody(new ObjectMapper().writeValueAsString(transactionDTO));
+                    stored.setExpiresAt(LocalDateTime.now().plusHours(1));
+                    return Optional.of(stored);
+                });
+
+        TransactionDTO result = idempotencyService.transfer("key-1", transactionDTO, userDetails);
+
+        assertEquals(transactionDTO, result);
+        verify(cardService, never()).transfer(any(), any());
+    }
+
+    @Test
+    void transfer_WhenTransferCommitsSeparately_ShouldClaimAndCompleteInOwnTransactions() {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+
+        when(cardService.commitsTransfersSeparately()).thenReturn(true);
+        when(idempotencyKeyRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        when(cardService.transfer(transactionDTO, userDetails)).thenReturn(transactionDTO);
+
+        TransactionDTO result = idempotencyService.transfer("key-1", transactionDTO, userDetails);
+
+        assertEquals(transactionDTO, result);
+        verify(idempotencyKeyRepository, times(1)).complete(eq(1L), eq("key-1"), contains("\"amount\":1000"));
+        // Ключ и результат - две короткие транзакции, перевод выполняется между ними
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void transfer_WhenSeparateTransferIsRejected_ShouldReleaseKey() {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+
+        when(cardService.commitsTransfersSeparately()).thenReturn(true);
+        when(idempotencyKeyRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        when(cardService.transfer(transactionDTO, userDetails)).thenThrow(new NegativeBalanceException("Недостаточно средств"));
+
+        assertThrows(NegativeBalanceException.class,
+                () -> idempotencyService.transfer("key-1", transactionDTO, userDetails));
+        verify(idempotencyKeyRepository, times(1)).release(1L, "key-1");
+        verify(idempotencyKeyRepository, never()).complete(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void transfer_WhenSeparateTransferOutcomeIsUnknown_ShouldKeepKeyClaimed() {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 1000L);
+
+        when(cardService.commitsTransfersSeparately()).thenReturn(true);
+        when(idempotencyKeyRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        when(cardService.transfer(transactionDTO, userDetails))
+                .thenThrow(new IllegalStateException("Перевод не подтверждён вовремя"));
+
+        assertThrows(IllegalStateException.class,
+                () -> idempotencyService.transfer("key-1", transactionDTO, userDetails));
+        verify(idempotencyKeyRepository, never()).release(anyLong(), anyString());
+    }
+
+    @Test
+    void purgeExpired_ShouldDeleteInBatchesUntilLastBatchIsNotFull() {
+        when(idempotencyKeyRepository.deleteExpired(any(LocalDateTime.class), eq(2))).thenReturn(2, 2, 1);
+
+        idempotencyService.purgeExpired();
+
+        verify(idempotencyKeyRepository, times(3)).deleteExpired(any(LocalDateTime.class), eq(2));
+    }
+}
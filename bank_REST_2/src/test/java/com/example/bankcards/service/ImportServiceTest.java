@@ -0,0 +1,168 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.ImportJobDTO;
+import com.example.bankcards.dto.ImportRejectedRowDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.ImportJobStatus;
+import com.example.bankcards.util.ImportKind;
+import com.example.bankcards.util.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class},
+        properties = {"imports.chunk-size=2", "imports.password-strength=4"})
+@ActiveProfiles("test")
+public class ImportServiceTest implements PostgreSQLContainerInitializer {
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012394");
+        user.setEmail("existing@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        usersRepository.save(user);
+    }
+
+    @Test
+    void importUsers_ShouldLoadValidRowsAndRejectDuplicates() throws Exception {
+        String hash = new BCryptPasswordEncoder(4).encode("legacy-password");
+        ImportJobDTO job = awaitFinished(importService.submit(ImportKind.USERS, csv("""
+                first_name,second_name,middle_name,email,phone_number,password
+                Иван,Иванов,Иванович,ivan@gmail.com,+79990000001,password123
+                Пётр,Петров,Петрович,petr@gmail.com,+79990000002,%s
+                Иван,Иванов,Иванович,ivan@gmail.com,+79990000003,password123
+                Анна,Павлова,Ивановна,existing@gmail.com,+79990000004,password123
+                Олег,Олегов,Олегович,not-an-email,+79990000005,password123
+
+                Мария,Иванова,"Петровна, младшая",maria@gmail.com,+79990000006,short
+                """.formatted(hash))));
+
+        assertEquals(ImportJobStatus.COMPLETED, job.status());
+        assertEquals(6, job.rowsRead());
+        assertEquals(2, job.rowsImported());
+        assertEquals(4, job.rowsRejected());
+
+        List<ImportRejectedRowDTO> rejected = importService.findRejectedRows(job.id(), 0, 100);
+        assertEquals(List.of(4L, 5L, 6L, 8L), rejected.stream().map(ImportRejectedRowDTO::lineNo).toList());
+        assertEquals("Email уже занят", rejected.get(0).reason());
+        assertEquals("Email уже занят", rejected.get(1).reason());
+        assertTrue(rejected.stream().noneMatch(row -> row.rawLine() != null && row.rawLine().contains("password123")));
+        assertEquals(List.of(8L), importService.findRejectedRows(job.id(), 6, 100).stream()
+                .map(ImportRejectedRowDTO::lineNo).toList());
+
+        User ivan = usersRepository.findByEmail("ivan@gmail.com").orElseThrow();
+        assertTrue(new BCryptPasswordEncoder().matches("password123", ivan.getPassword()));
+        assertEquals(hash, usersRepository.findByEmail("petr@gmail.com").orElseThrow().getPassword());
+        assertEquals(List.of("ROLE_USER"), jdbcTemplate.queryForList(
+                "SELECT r.name FROM user_roles ur JOIN roles r ON r.id = ur.role_id WHERE ur.user_id = ?",
+                String.class, ivan.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM import_user_rows", Long.class));
+    }
+
+    @Test
+    void importCards_ShouldResolveOwnersByEmail() throws Exception {
+        ImportJobDTO job = awaitFinished(importService.submit(ImportKind.CARDS, csv("""
+                user_email,final_date,balance,status
+                existing@gmail.com,2030-01-01,1000,
+                existing@gmail.com,2030-01-01,2000,blocked
+                nobody@gmail.com,2030-01-01,3000,ACTIVE
+                existing@gmail.com,31.12.2030,4000,ACTIVE
+                existing@gmail.com,2030-01-01,-1,ACTIVE
+                """)));
+
+        assertEquals(ImportJobStatus.COMPLETED, job.status());
+        assertEquals(5, job.rowsRead());
+        assertEquals(2, job.rowsImported());
+        assertEquals(3, job.rowsRejected());
+        assertEquals("Владелец карты не найден", importService.findRejectedRows(job.id(), 0, 1).getFirst().reason());
+
+        List<Card> cards = cardRepository.findAll();
+        assertEquals(2, cards.size());
+        assertEquals(List.of(Status.ACTIVE, Status.BLOCKED),
+                cards.stream().sorted((a, b) -> Long.compare(a.getBalance(), b.getBalance())).map(Card::getStatus).toList());
+    }
+
+    @Test
+    void import_WithWrongHeader_ShouldFail() throws Exception {
+        ImportJobDTO job = awaitFinished(importService.submit(ImportKind.CARDS, csv("""
+                email,date,balance
+                existing@gmail.com,2030-01-01,1000
+                """)));
+
+        assertEquals(ImportJobStatus.FAILED, job.status());
+        assertNotNull(job.error());
+        assertEquals(0, cardRepository.count());
+    }
+
+    @Test
+    void failInterruptedJobs_ShouldFailJobsLeftUnfinishedBeforeStartup() {
+        LocalDateTime beforeStartup = LocalDateTime.now().minusDays(1).withNano(0);
+        jdbcTemplate.update("INSERT INTO import_jobs (kind, status, created_at, started_at) VALUES (?, ?, ?, ?)",
+                ImportKind.USERS.name(), ImportJobStatus.RUNNING.name(), beforeStartup, beforeStartup);
+        jdbcTemplate.update("INSERT INTO import_jobs (kind, status, created_at) VALUES (?, ?, ?)",
+                ImportKind.CARDS.name(), ImportJobStatus.QUEUED.name(), beforeStartup);
+        jdbcTemplate.update("INSERT INTO import_jobs (kind, status, created_at, finished_at) VALUES (?, ?, ?, ?)",
+                ImportKind.CARDS.name(), ImportJobStatus.COMPLETED.name(), beforeStartup, beforeStartup);
+
+        assertEquals(2, importService.failInterruptedJobs());
+        assertEquals(List.of(ImportJobStatus.COMPLETED.name(), ImportJobStatus.FAILED.name(), ImportJobStatus.FAILED.name()),
+                jdbcTemplate.queryForList("SELECT status FROM import_jobs WHERE created_at = ? ORDER BY status",
+                        String.class, beforeStartup));
+    }
+
+    private ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ImportJobDTO awaitFinished(ImportJobDTO submitted) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            ImportJobDTO job = importService.findJob(submitted.id());
+            if (job.status() == ImportJobStatus.COMPLETED || job.status() == ImportJobStatus.FAILED) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Импорт не завершился за 30 секунд");
+    }
+}
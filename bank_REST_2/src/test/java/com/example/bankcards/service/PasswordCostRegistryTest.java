@@ -0,0 +1,68 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class})
+@ActiveProfiles("test")
+public class PasswordCostRegistryTest implements PostgreSQLContainerInitializer {
+
+    private static final Duration TARGET = Duration.ofMillis(100);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM password_hashing_cost");
+    }
+
+    @Test
+    void refresh_ShouldMakeEveryNodeUseCostOfFirstNode() {
+        // Границы min = max задают подобранную на узле стоимость независимо от железа
+        PasswordCostRegistry fastNode = node(5, Duration.ofDays(7));
+        PasswordCostRegistry slowNode = node(4, Duration.ofDays(7));
+        assertEquals(4, slowNode.getEncoder().getStrength());
+
+        fastNode.refresh();
+        slowNode.refresh();
+
+        assertEquals(5, fastNode.getEncoder().getStrength());
+        assertEquals(5, slowNode.getEncoder().getStrength());
+        assertFalse(slowNode.getEncoder().upgradeEncoding(fastNode.getEncoder().encode("password")));
+    }
+
+    @Test
+    void refresh_WhenCostIsStale_ShouldRecalibrateAndSpreadNewCost() {
+        PasswordCostRegistry oldNode = node(5, Duration.ofDays(7));
+        oldNode.refresh();
+        jdbcTemplate.update("UPDATE password_hashing_cost SET calibrated_at = calibrated_at - interval '8 days'");
+
+        PasswordCostRegistry newNode = node(4, Duration.ofDays(7));
+        newNode.refresh();
+        oldNode.refresh();
+
+        assertEquals(4, newNode.getEncoder().getStrength());
+        assertEquals(4, oldNode.getEncoder().getStrength());
+    }
+
+    private PasswordCostRegistry node(int calibratedStrength, Duration recalibrateAfter) {
+        return new PasswordCostRegistry(jdbcTemplate, 0, TARGET, calibratedStrength, calibratedStrength,
+                recalibrateAfter);
+    }
+}
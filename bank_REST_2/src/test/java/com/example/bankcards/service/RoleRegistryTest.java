@@ -0,0 +1,58 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.util.RoleEnum;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoleRegistryTest {
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @InjectMocks
+    private RoleRegistry roleRegistry;
+
+    @Test
+    void get_ShouldResolveRolesWithoutQueriesAfterRefresh() {
+        when(roleRepository.findAll()).thenReturn(List.of(new Role(1L, RoleEnum.ROLE_USER), new Role(2L, RoleEnum.ROLE_ADMIN)));
+        roleRegistry.refresh();
+
+        Role user = roleRegistry.get(RoleEnum.ROLE_USER);
+        Role admin = roleRegistry.get(RoleEnum.ROLE_ADMIN);
+
+        assertEquals(1L, user.getId());
+        assertEquals(RoleEnum.ROLE_USER, user.getName());
+        assertEquals(2L, admin.getId());
+        assertNotSame(user, roleRegistry.get(RoleEnum.ROLE_USER));
+        verify(roleRepository, times(1)).findAll();
+    }
+
+    @Test
+    void get_ShouldReloadOnceWhenRoleIsMissing() {
+        when(roleRepository.findAll())
+                .thenReturn(List.of(new Role(1L, RoleEnum.ROLE_USER)))
+                .thenReturn(List.of(new Role(1L, RoleEnum.ROLE_USER), new Role(2L, RoleEnum.ROLE_ADMIN)));
+        roleRegistry.refresh();
+
+        assertEquals(2L, roleRegistry.get(RoleEnum.ROLE_ADMIN).getId());
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    @Test
+    void get_ShouldFailWhenRoleDoesNotExist() {
+        when(roleRepository.findAll()).thenReturn(List.of(new Role(1L, RoleEnum.ROLE_USER)));
+
+        assertThrows(IllegalStateException.class, () -> roleRegistry.get(RoleEnum.ROLE_ADMIN));
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.configuration.NoSecurityTestConfig;
+import com.example.bankcards.configuration.PostgreSQLContainerInitializer;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.NegativeBalanceException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Движок SHARDED: после ответа клиенту балансы уже записаны в БД, сумма балансов не меняется,
+ * ошибка записи журнала отклоняет переводы и сбрасывает шарды.
+ * Сравнение пропускной способности с режимом LOCKING - в perf (ShardedBalanceEngineBenchmark)
+ */
+@SpringBootTest(classes = {BankRestApplication.class, NoSecurityTestConfig.class},
+        properties = "transfer.mode=SHARDED")
+@ActiveProfiles("test")
+public class ShardedBalanceEngineTest implements PostgreSQLContainerInitializer {
+
+    private static final int CARDS = 10;
+    private static final int THREADS = 4;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AuthService authService;
+
+    private UserDetailsImpl userDetails;
+
+    private List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        usersRepository.deleteAll();
+
+        User user = new User();
+        user.setPhoneNumber("+79540012398");
+        user.setEmail("sharded@gmail.com");
+        user.setFirstName("Павел");
+        user.setMiddleName("Павлов");
+        user.setSecondName("Павлович");
+        user.setPassword("securepassword113");
+        user = usersRepository.save(user);
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setStatus(Status.ACTIVE);
+            card.setUser(user);
+            card.setBalance(INITIAL_BALANCE);
+            card.setFinalDate(LocalDate.now().plusYears(3));
+            cardIds.add(cardRepository.save(card).getId());
+        }
+
+        userDetails = new UserDetailsImpl(user.getId(), "Павел", user.getEmail(), user.getPassword(),
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), user.getPhoneNumber());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardIds.forEach(cardService::deleteCard);
+    }
+
+    @Test
+    void shardedTransfer_ShouldPersistBeforeReturning() {
+        cardService.transfer(new TransactionDTO(cardIds.get(0), cardIds.get(1), 100L), userDetails);
+
+        assertEquals(INITIAL_BALANCE - 100L, cardRepository.findById(cardIds.get(0)).orElseThrow().getBalance());
+        assertEquals(INITIAL_BALANCE + 100L, cardRepository.findById(cardIds.get(1)).orElseThrow().getBalance());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transfers WHERE from_card_id = ?", Integer.class, cardIds.get(0)));
+    }
+
+    @Test
+    void shardedTransfer_ShouldRejectAndReleaseReserve() {
+        TransactionDTO tooMuch = new TransactionDTO(cardIds.get(0), cardIds.get(1), INITIAL_BALANCE + 1);
+
+        assertThrows(NegativeBalanceException.class, () -> cardService.transfer(tooMuch, userDetails));
+
+        cardService.transfer(new TransactionDTO(cardIds.get(0), cardIds.get(1), INITIAL_BALANCE), userDetails);
+        assertEquals(0L, cardRepository.findById(cardIds.get(0)).orElseThrow().getBalance());
+    }
+
+    @Test
+    void shardedTransfer_WhenFlushFails_ShouldRejectAndReloadCardsFromDatabase() {
+        Long source = cardIds.get(0);
+        Long target = cardIds.get(1);
+        Long deleted = cardIds.get(2);
+
+        // Отказ в переводе загружает карту в шард, не оставляя записей transfers
+        assertThrows(NegativeBalanceException.class, () -> cardService.transfer(
+                new TransactionDTO(deleted, target, INITIAL_BALANCE + 1), userDetails));
+        jdbcTemplate.update("DELETE FROM cards WHERE id = ?", deleted);
+        cardIds.remove(deleted);
+
+        assertThrows(IllegalStateException.class, () -> cardService.transfer(
+                new TransactionDTO(source, deleted, 100L), userDetails));
+        assertEquals(INITIAL_BALANCE, cardRepository.findById(source).orElseThrow().getBalance());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transfers WHERE from_card_id = ?", Integer.class, source));
+
+        // Списание незаписанного перевода отброшено вместе с картами шарда, в памяти снова баланс из БД
+        cardService.transfer(new TransactionDTO(source, target, INITIAL_BALANCE), userDetails);
+        assertEquals(0L, cardRepository.findById(source).orElseThrow().getBalance());
+        assertEquals(INITIAL_BALANCE * 2, cardRepository.findById(target).orElseThrow().getBalance());
+    }
+
+    @Test
+    void concurrentShardedTransfers_ShouldKeepTotalBalance() throws InterruptedException {
+        run();
+        assertEquals(INITIAL_BALANCE * CARDS, totalBalance());
+    }
+
+    private void run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = random.nextInt(CARDS);
+                        int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                        try {
+                            cardService.transfer(new TransactionDTO(cardIds.get(from), cardIds.get(to),
+                                    random.nextLong(1, 100)), userDetails);
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        start.countDown();
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        executor.shutdown();
+
+        assertEquals(0, failures.get());
+    }
+
+    private long totalBalance() {
+        return cardRepository.findAllById(cardIds).stream()
+                .mapToLong(Card::getBalance)
+                .sum();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.UsersRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenVersionRegistryTest {
+
+    @Mock
+    private UsersRepository usersRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void isCurrent_ShouldLoadVersionOnceAndCompare() {
+        TokenVersionRegistry registry = new TokenVersionRegistry(usersRepository, meterRegistry, 100, Duration.ofMinutes(1));
+        when(usersRepository.findTokenVersionById(1L)).thenReturn(Optional.of(2L));
+
+        assertTrue(registry.isCurrent(user(1L, 2L)));
+        assertFalse(registry.isCurrent(user(1L, 1L)));
+
+        verify(usersRepository, times(1)).findTokenVersionById(1L);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "user.token-version").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void isCurrent_ShouldRejectDeletedUser() {
+        TokenVersionRegistry registry = new TokenVersionRegistry(usersRepository, meterRegistry, 100, Duration.ofMinutes(1));
+        when(usersRepository.findTokenVersionById(1L)).thenReturn(Optional.empty());
+
+        assertFalse(registry.isCurrent(user(1L, 0L)));
+    }
+
+    @Test
+    void onUserChanged_ShouldReloadChangedVersion() {
+        TokenVersionRegistry registry = new TokenVersionRegistry(usersRepository, meterRegistry, 100, Duration.ofMinutes(1));
+        when(usersRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0L), Optional.of(1L));
+
+        assertTrue(registry.isCurrent(user(1L, 0L)));
+        registry.onUserChanged(new UserChangedEvent(1L));
+
+        assertFalse(registry.isCurrent(user(1L, 0L)));
+        assertTrue(registry.isCurrent(user(1L, 1L)));
+    }
+
+    private UserDetailsImpl user(Long id, long tokenVersion) {
+        return new UserDetailsImpl(id, "Павел", "hellothere@gmail.com", null, List.of(), null, tokenVersion);
+    }
+}
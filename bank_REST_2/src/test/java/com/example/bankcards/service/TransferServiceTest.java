@@ -0,0 +1,120 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.TransferHistoryDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.DifferentIdentifierException;
+import com.example.bankcards.mapper.TransferMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferServiceTest {
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Spy
+    private TransferMapper transferMapper;
+
+    @InjectMocks
+    private TransferService transferService;
+
+    @Test
+    void recordTransferTest() {
+        TransactionDTO transactionDTO = new TransactionDTO(1L, 2L, 500L);
+
+        transferService.recordTransfer(transactionDTO, 7L);
+
+        verify(transferRepository, times(1)).save(argThat(transfer ->
+                transfer.getFromCardId() == 1L
+                        && transfer.getToCardId() == 2L
+                        && transfer.getAmount() == 500L
+                        && transfer.getUserId() == 7L
+                        && transfer.getCreatedAt() != null));
+    }
+
+    @Test
+    void findUserHistory_WhenPageIsFull_ShouldReturnCursor() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 6, 1, 12, 0);
+        List<Transfer> transfers = List.of(makeATransfer(11L, createdAt.plusMinutes(1)), makeATransfer(10L, createdAt));
+
+        when(transferRepository.findUserHistory(eq(7L), any(LocalDateTime.class), eq(Long.MAX_VALUE), eq(2)))
+                .thenReturn(transfers);
+
+        TransferHistoryDTO result = transferService.findUserHistory(7L, null, null, 2, makeUserDetails(7L));
+
+        assertEquals(2, result.content().size());
+        assertEquals(createdAt, result.nextCreatedAt());
+        assertEquals(10L, result.nextId());
+    }
+
+    @Test
+    void findUserHistory_WhenPageIsNotFull_ShouldReturnNoCursor() {
+        LocalDateTime before = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+        when(transferRepository.findUserHistory(7L, before, 10L, 20))
+                .thenReturn(List.of(makeATransfer(9L, before.minusMinutes(1))));
+
+        TransferHistoryDTO result = transferService.findUserHistory(7L, before, 10L, 20, makeUserDetails(7L));
+
+        assertEquals(1, result.content().size());
+        assertNull(result.nextCreatedAt());
+        assertNull(result.nextId());
+    }
+
+    @Test
+    void findCardHistory_WhenCardBelongsToAnotherUser_ShouldThrowException() {
+        User owner = new User();
+        owner.setId(1L);
+        Card card = new Card();
+        card.setId(3L);
+        card.setUser(owner);
+
+        when(cardRepository.findById(3L)).thenReturn(Optional.of(card));
+
+        assertThrows(DifferentIdentifierException.class,
+                () -> transferService.findCardHistory(3L, null, null, 20, makeUserDetails(999L)));
+
+        verify(transferRepository, never()).findCardHistory(anyLong(), any(), anyLong(), anyInt());
+    }
+
+    private Transfer makeATransfer(Long id, LocalDateTime createdAt) {
+        Transfer transfer = new Transfer();
+        transfer.setId(id);
+        transfer.setFromCardId(1L);
+        transfer.setToCardId(2L);
+        transfer.setUserId(7L);
+        transfer.setAmount(100L);
+        transfer.setCreatedAt(createdAt);
+        return transfer;
+    }
+
+    private UserDetailsImpl makeUserDetails(Long id) {
+        return new UserDetailsImpl(id, "Павел", "hellothere@gmail.com", "securepassword113",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), "+79540012325");
+    }
+}
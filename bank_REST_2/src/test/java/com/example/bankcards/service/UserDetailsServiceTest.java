@@ -0,0 +1,73 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UsersRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDetailsServiceTest {
+
+    private static final String EMAIL = "hellothere@gmail.com";
+
+    @Mock
+    private UsersRepository usersRepository;
+
+    @Mock
+    private UserDetailsFactory userDetailsFactory;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = new UserDetailsService(usersRepository, userDetailsFactory, transactionManager);
+    }
+
+    @Test
+    void loadUserByUsername_ShouldQueryDatabaseEveryTime() {
+        User user = new User();
+        UserDetailsImpl userDetails = userDetails();
+        when(usersRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(userDetailsFactory.build(user)).thenReturn(userDetails);
+
+        assertSame(userDetails, userDetailsService.loadUserByUsername(EMAIL));
+        assertSame(userDetails, userDetailsService.loadUserByUsername(EMAIL));
+
+        verify(usersRepository, times(2)).findByEmail(EMAIL);
+    }
+
+    @Test
+    void loadUserByUsername_ShouldThrowForMissingUser() {
+        when(usersRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername(EMAIL));
+    }
+
+    @Test
+    void updatePassword_ShouldStoreNewHash() {
+        UserDetails updated = userDetailsService.updatePassword(userDetails(), "$2a$12$rehashed");
+
+        assertEquals("$2a$12$rehashed", updated.getPassword());
+        assertEquals(EMAIL, updated.getUsername());
+        verify(usersRepository, times(1)).updatePassword(1L, "$2a$12$rehashed");
+    }
+
+    private UserDetailsImpl userDetails() {
+        return new UserDetailsImpl(1L, "Павел", EMAIL, "securepassword113", List.of(), "+79540012325");
+    }
+}
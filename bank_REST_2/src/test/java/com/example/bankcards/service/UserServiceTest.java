@@ -12,6 +12,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +34,9 @@ class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     //findAllCardsTest
     @Test
     void findAllUsersTest() {
@@ -166,6 +170,7 @@ class UserServiceTest {
         userService.deleteUser(1L);
 
         verify(usersRepository, times(1)).deleteById(1L);
+        verify(eventPublisher, times(1)).publishEvent(new UserChangedEvent(1L));
     }
     //EditUserTest
     @Test
@@ -184,6 +189,8 @@ class UserServiceTest {
 
         verify(userMapper, times(1)).makeAUser(userDTO);
         verify(usersRepository, times(1)).save(user);
+        verify(usersRepository, times(1)).incrementTokenVersion(1L);
+        verify(eventPublisher, times(1)).publishEvent(new UserChangedEvent(1L));
     }
     private User makeAUser() {
         User user = new User();
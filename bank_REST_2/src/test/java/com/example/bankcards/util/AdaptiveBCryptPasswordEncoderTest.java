@@ -0,0 +1,48 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBCryptPasswordEncoderTest {
+
+    @Test
+    void upgradeEncoding_ShouldRehashWhenStoredCostDiffers() {
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(6);
+
+        assertFalse(encoder.upgradeEncoding(encoder.encode("password")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("password")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(7).encode("password")));
+        assertFalse(encoder.upgradeEncoding("not-a-bcrypt-hash"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void setStrength_ShouldChangeCostOfNewHashes() {
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(6);
+        String before = encoder.encode("password");
+
+        encoder.setStrength(5);
+
+        assertTrue(encoder.encode("password").startsWith("$2a$05$"));
+        assertTrue(encoder.upgradeEncoding(before));
+        assertTrue(encoder.matches("password", before));
+        assertThrows(IllegalArgumentException.class, () -> encoder.setStrength(3));
+    }
+
+    @Test
+    void encoder_ShouldStillMatchHashesOfAnotherCost() {
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(6);
+
+        assertTrue(encoder.matches("password", new BCryptPasswordEncoder(4).encode("password")));
+    }
+
+    @Test
+    void calibrate_ShouldStayWithinBounds() {
+        assertEquals(4, AdaptiveBCryptPasswordEncoder.calibrate(Duration.ofNanos(1), 4, 6));
+        assertEquals(6, AdaptiveBCryptPasswordEncoder.calibrate(Duration.ofHours(1), 4, 6));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.PasswordHashingOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void encodeAndMatches_ShouldRunOnPoolThread() {
+        try (BulkheadPasswordEncoder encoder = new BulkheadPasswordEncoder(new ThreadNameEncoder(), 1, 1,
+                Duration.ofSeconds(5), Duration.ofSeconds(1), meterRegistry)) {
+
+            assertTrue(encoder.encode("secret").startsWith("password-hashing-"));
+            assertTrue(encoder.matches("secret", "password-hashing-1"));
+            assertEquals(1, meterRegistry.get("auth.password.hash.latency").tag("operation", "encode").timer().count());
+        }
+    }
+
+    @Test
+    void encode_ShouldRejectImmediatelyWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        try (BulkheadPasswordEncoder encoder = new BulkheadPasswordEncoder(new BlockingEncoder(started, release), 1, 1,
+                Duration.ofSeconds(5), Duration.ofSeconds(2), meterRegistry)) {
+
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+            while (meterRegistry.get("auth.password.queue.depth").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            PasswordHashingOverloadedException ex = assertThrows(PasswordHashingOverloadedException.class,
+                    () -> encoder.encode("third"));
+            assertEquals(2, ex.getRetryAfterSeconds());
+            assertEquals(1.0, meterRegistry.get("auth.password.rejected").counter().count());
+
+            release.countDown();
+            assertEquals("first", running.get(5, TimeUnit.SECONDS));
+            assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static class ThreadNameEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return Thread.currentThread().getName();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return Thread.currentThread().getName().equals(encodedPassword);
+        }
+    }
+
+    private record BlockingEncoder(CountDownLatch started, CountDownLatch release) implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    }
+}
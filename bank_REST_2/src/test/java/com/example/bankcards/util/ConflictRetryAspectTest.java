@@ -0,0 +1,86 @@
+package com.example.bankcards.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRetryAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private FlakyOperation target;
+
+    private FlakyOperation proxy;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+
+        ConflictRetryAspect aspect = new ConflictRetryAspect(meterRegistry);
+        ReflectionTestUtils.setField(aspect, "maxAttempts", 3);
+        ReflectionTestUtils.setField(aspect, "initialBackoffMs", 1L);
+        ReflectionTestUtils.setField(aspect, "maxBackoffMs", 2L);
+
+        target = new FlakyOperation();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+    }
+
+    @Test
+    void retry_WhenOptimisticLockFailsOnce_ShouldSucceed() {
+        target.failures = 1;
+        target.failure = new ObjectOptimisticLockingFailureException("Card", 1L);
+
+        assertEquals("ok", proxy.run());
+
+        assertEquals(2, target.calls);
+        assertEquals(1.0, meterRegistry.counter("card.operation.retries", "operation", "FlakyOperation.run").count());
+    }
+
+    @Test
+    void retry_WhenSerializationFailureRepeats_ShouldGiveUp() {
+        target.failures = 10;
+        target.failure = new RuntimeException("commit failed",
+                new SQLException("could not serialize access", "40001"));
+
+        assertThrows(RuntimeException.class, () -> proxy.run());
+
+        assertEquals(3, target.calls);
+        assertEquals(2.0, meterRegistry.counter("card.operation.retries", "operation", "FlakyOperation.run").count());
+        assertEquals(1.0, meterRegistry.counter("card.operation.giveups", "operation", "FlakyOperation.run").count());
+    }
+
+    @Test
+    void retry_WhenErrorIsNotConflict_ShouldNotRetry() {
+        target.failures = 1;
+        target.failure = new DataIntegrityViolationException("duplicate");
+
+        assertThrows(DataIntegrityViolationException.class, () -> proxy.run());
+
+        assertEquals(1, target.calls);
+    }
+
+    static class FlakyOperation {
+        int failures;
+        int calls;
+        RuntimeException failure;
+
+        @RetryOnConflict
+        public String run() {
+            calls++;
+            if (calls <= failures) {
+                throw failure;
+            }
+            return "ok";
+        }
+    }
+}
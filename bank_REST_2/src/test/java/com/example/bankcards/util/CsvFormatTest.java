@@ -0,0 +1,46 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvFormatTest {
+
+    @Test
+    void parse_ShouldSplitPlainAndQuotedValues() {
+        assertEquals(List.of("Иван", "a,b", "say \"hi\"", ""),
+                CsvFormat.parse("Иван,\"a,b\",\"say \"\"hi\"\"\","));
+    }
+
+    @Test
+    void parse_ShouldKeepEmptyValues() {
+        assertEquals(List.of("", "", ""), CsvFormat.parse(",,"));
+        assertEquals(List.of(""), CsvFormat.parse(""));
+    }
+
+    @Test
+    void parse_ShouldRejectBrokenQuotes() {
+        assertThrows(IllegalArgumentException.class, () -> CsvFormat.parse("\"open,value"));
+        assertThrows(IllegalArgumentException.class, () -> CsvFormat.parse("\"closed\"tail,value"));
+    }
+
+    @Test
+    void append_ShouldQuoteTextAndLeaveNullEmpty() {
+        StringBuilder out = new StringBuilder();
+
+        CsvFormat.append(out, 7L, "a \"b\", c", null, LocalDate.of(2030, 1, 1), "");
+
+        assertEquals("7,\"a \"\"b\"\", c\",,2030-01-01,\"\"\n", out.toString());
+    }
+
+    @Test
+    void append_ShouldBeReadBackByParse() {
+        StringBuilder out = new StringBuilder();
+        CsvFormat.append(out, "x,y", "\"", "plain");
+
+        assertEquals(List.of("x,y", "\"", "plain"), CsvFormat.parse(out.substring(0, out.length() - 1)));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.service.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilsTest {
+
+    private static final String SECRET =
+            "tstrs4g434wyhser5htstrs4g434wyhser5htstrs4g434wyhser5htstrs4g434wyhser5htstrs4g434wyhser5h";
+
+    private final JwtUtils jwtUtils = new JwtUtils(SECRET, 60_000, 100);
+
+    @Test
+    void parseClaims_ShouldReturnSubjectOfValidToken() {
+        String token = token(SECRET, System.currentTimeMillis() + 60_000);
+
+        Claims claims = jwtUtils.parseClaims(token).orElseThrow();
+
+        assertEquals("user@gmail.com", claims.getSubject());
+    }
+
+    @Test
+    void parseClaims_ShouldReturnCachedClaimsForRepeatedToken() {
+        String token = token(SECRET, System.currentTimeMillis() + 60_000);
+
+        Claims first = jwtUtils.parseClaims(token).orElseThrow();
+        Claims second = jwtUtils.parseClaims(token).orElseThrow();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void parseClaims_ShouldRejectExpiredToken() {
+        String token = token(SECRET, System.currentTimeMillis() - 1_000);
+
+        assertTrue(jwtUtils.parseClaims(token).isEmpty());
+    }
+
+    @Test
+    void parseClaims_ShouldRejectTokenSignedWithAnotherKey() {
+        String token = token(SECRET.replace('t', 'x'), System.currentTimeMillis() + 60_000);
+
+        assertTrue(jwtUtils.parseClaims(token).isEmpty());
+    }
+
+    @Test
+    void parseClaims_ShouldRejectMalformedToken() {
+        assertTrue(jwtUtils.parseClaims("not-a-token").isEmpty());
+        assertTrue(jwtUtils.parseClaims("").isEmpty());
+    }
+
+    @Test
+    void parseClaims_ShouldWorkWithoutCache() {
+        JwtUtils uncached = new JwtUtils(SECRET, 60_000, 0);
+        String token = token(SECRET, System.currentTimeMillis() + 60_000);
+
+        assertEquals("user@gmail.com", uncached.parseClaims(token).orElseThrow().getSubject());
+    }
+
+    @Test
+    void generatedToken_ShouldCarryUserDetails() {
+        UserDetailsImpl user = new UserDetailsImpl(7L, "Павел Павлович Павлов", "user@gmail.com", "secret",
+                List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")),
+                "+79540012325", 3L);
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(user, null));
+
+        UserDetailsImpl fromToken = jwtUtils.toUserDetails(jwtUtils.parseClaims(token).orElseThrow()).orElseThrow();
+
+        assertEquals(7L, fromToken.getId());
+        assertEquals("user@gmail.com", fromToken.getEmail());
+        assertEquals("Павел Павлович Павлов", fromToken.getUsername());
+        assertEquals(3L, fromToken.getTokenVersion());
+        assertNull(fromToken.getPassword());
+        assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"),
+                fromToken.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    @Test
+    void toUserDetails_ShouldBeEmptyForTokenWithoutUserId() {
+        String token = token(SECRET, System.currentTimeMillis() + 60_000);
+
+        assertTrue(jwtUtils.toUserDetails(jwtUtils.parseClaims(token).orElseThrow()).isEmpty());
+    }
+
+    private String token(String secret, long expiresAt) {
+        return Jwts.builder()
+                .setSubject("user@gmail.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(expiresAt))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)), SignatureAlgorithm.HS256)
+                .compact();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongMapTest {
+
+    @Test
+    void putGetAndAddTo() {
+        LongLongMap map = new LongLongMap();
+
+        map.put(1L, 100L);
+        map.addTo(1L, -30L);
+        map.addTo(2L, 5L);
+
+        assertEquals(70L, map.get(1L, 0L));
+        assertEquals(5L, map.get(2L, 0L));
+        assertEquals(-1L, map.get(3L, -1L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void randomOperations_ShouldMatchHashMap() {
+        LongLongMap map = new LongLongMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(2_000);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    map.put(key, i);
+                    expected.put(key, (long) i);
+                }
+                case 1 -> assertEquals(expected.remove(key) != null, map.remove(key));
+                default -> {
+                    map.addTo(key, 1L);
+                    expected.merge(key, 1L, Long::sum);
+                }
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key, Long.MIN_VALUE)));
+        map.forEach((key, value) -> assertEquals(expected.get(key), value));
+    }
+}